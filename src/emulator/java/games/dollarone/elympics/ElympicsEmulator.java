@@ -0,0 +1,520 @@
+package games.dollarone.elympics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the Elympics API, for load and performance tests that must not hit the real endpoint.
+ * Point a client at it with {@link ElympicsBuilder#withEndpoint(String)} and {@link #getEndpoint()}.
+ *
+ * It answers {@code /getHighscores} and {@code /submitHighscore} the way {@link Requester} expects: form encoded
+ * bodies or query strings, the {@code key} header, gzip compressed requests and responses, {@code Link} pagination
+ * and {@code ETag} revalidation. Each player's best submitted score is kept after any preloaded high scores.
+ *
+ * Responses can be delayed by a {@link Latency} distribution, and a fraction of requests can be failed with a
+ * {@code 403} and {@code Retry-After}, a {@code 503}, or a connection closed without a response. Faults and latency
+ * can be changed while the emulator is running.
+ *
+ * The server writes headers and bodies separately, which Nagle's algorithm holds back for the client's delayed ack,
+ * adding tens of milliseconds to every response. Run it with {@code -Dsun.net.httpserver.nodelay=true} when
+ * measuring latency, as the {@code jmh} and {@code loadgen} tasks do.
+ */
+public final class ElympicsEmulator implements Closeable {
+
+    /**
+     * Distribution of the time taken to answer a request.
+     */
+    @FunctionalInterface
+    public interface Latency {
+
+        /**
+         * No added latency.
+         */
+        Latency NONE = random -> 0;
+
+        /**
+         * Draws the time taken to answer a request.
+         *
+         * @param random The source of randomness
+         * @return The latency in nanoseconds
+         */
+        long nextNanos(Random random);
+
+        static Latency fixed(long latency, TimeUnit unit) {
+            long nanos = unit.toNanos(latency);
+            return random -> nanos;
+        }
+
+        static Latency uniform(long min, long max, TimeUnit unit) {
+            long minNanos = unit.toNanos(min);
+            long rangeNanos = unit.toNanos(max) - minNanos;
+            return random -> minNanos + (long) (random.nextDouble() * rangeNanos);
+        }
+
+        /**
+         * Log-normal latency, the usual shape of service response times: most requests close to the median and a
+         * long tail of slow ones.
+         *
+         * @param median The median latency
+         * @param p99 The 99th percentile latency
+         * @param unit The unit of {@code median} and {@code p99}
+         * @return The distribution
+         */
+        static Latency logNormal(long median, long p99, TimeUnit unit) {
+            double mu = Math.log(unit.toNanos(median));
+            double sigma = Math.log((double) p99 / median) / 2.3263478740408408; // z-score of the 99th percentile
+            return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+        }
+    }
+
+    private final Set<String> keys = new HashSet<>();
+    private final List<ElympicsHighscore> preloaded = new ArrayList<>();
+    private final Map<String, ElympicsHighscore> submitted = new LinkedHashMap<>();
+    private long version;
+    private final Object renderLock = new Object();
+    private volatile Rendered rendered;
+
+    private volatile int pageSize;
+    private volatile Latency latency = Latency.NONE;
+    private volatile double rateLimitRate;
+    private volatile int retryAfterSeconds = 1;
+    private volatile double serverErrorRate;
+    private volatile double resetRate;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder faults = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * The leaderboard rendered as JSON pages, reused until a submission changes it.
+     */
+    private static final class Rendered {
+        final long version;
+        final String etag;
+        final byte[][] pages;
+        final byte[][] gzippedPages;
+
+        Rendered(long version, byte[][] pages) throws IOException {
+            this.version = version;
+            this.etag = "\"" + version + "\"";
+            this.pages = pages;
+            this.gzippedPages = new byte[pages.length][];
+            for (int i = 0; i < pages.length; i++) {
+                gzippedPages[i] = gzip(pages[i]);
+            }
+        }
+    }
+
+    /**
+     * Only accepts requests made with the given key. Without any key configured, every key is accepted.
+     *
+     * @param key The key
+     * @return The emulator
+     */
+    public synchronized ElympicsEmulator withKey(String key) {
+        keys.add(key);
+        return this;
+    }
+
+    /**
+     * Adds high scores to the leaderboard, kept as is before the submitted ones.
+     *
+     * @param highscores The high scores
+     * @return The emulator
+     */
+    public synchronized ElympicsEmulator withHighscores(Collection<? extends ElympicsHighscore> highscores) {
+        preloaded.addAll(highscores);
+        version++;
+        return this;
+    }
+
+    /**
+     * Adds generated high scores to the leaderboard, from 50000 distinct players with scattered scores.
+     *
+     * @param count The number of high scores
+     * @return The emulator
+     */
+    public ElympicsEmulator withGeneratedHighscores(int count) {
+        return withHighscores(generateHighscores(count));
+    }
+
+    /**
+     * Splits {@code /getHighscores} responses into pages linked with {@code Link: <...>; rel="next"}.
+     *
+     * @param pageSize The number of high scores per page, or {@code 0} to answer in a single response
+     * @return The emulator
+     */
+    public synchronized ElympicsEmulator withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        version++; // re-render the pages
+        return this;
+    }
+
+    public ElympicsEmulator withLatency(Latency latency) {
+        this.latency = latency != null ? latency : Latency.NONE;
+        return this;
+    }
+
+    /**
+     * Rate limits a fraction of requests with a {@code 403} and a {@code Retry-After} header.
+     *
+     * @param rate The fraction of requests, from {@code 0} to {@code 1}
+     * @param retryAfterSeconds The value of the {@code Retry-After} header
+     * @return The emulator
+     */
+    public ElympicsEmulator withRateLimitRate(double rate, int retryAfterSeconds) {
+        this.rateLimitRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Fails a fraction of requests with a {@code 503 Service Unavailable}.
+     *
+     * @param rate The fraction of requests, from {@code 0} to {@code 1}
+     * @return The emulator
+     */
+    public ElympicsEmulator withServerErrorRate(double rate) {
+        this.serverErrorRate = rate;
+        return this;
+    }
+
+    /**
+     * Closes the connection of a fraction of requests without sending a response.
+     *
+     * @param rate The fraction of requests, from {@code 0} to {@code 1}
+     * @return The emulator
+     */
+    public ElympicsEmulator withResetRate(double rate) {
+        this.resetRate = rate;
+        return this;
+    }
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface.
+     *
+     * @return The emulator
+     * @throws IOException If the server could not be started
+     */
+    public synchronized ElympicsEmulator start() throws IOException {
+        if (server != null) throw new IllegalStateException("Emulator already started");
+        executor = ElympicsExecutors.newDaemonCachedThreadPool("elympics-emulator");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/getHighscores", exchange -> handle(exchange, this::getHighscores));
+        server.createContext("/submitHighscore", exchange -> handle(exchange, this::submitHighscore));
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Gets the URL to configure clients with.
+     *
+     * @return The endpoint
+     */
+    public synchronized String getEndpoint() {
+        if (server == null) throw new IllegalStateException("Emulator not started");
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the number of requests that were failed on purpose.
+     *
+     * @return The number of injected faults
+     */
+    public long getFaultCount() {
+        return faults.sum();
+    }
+
+    /**
+     * Gets the leaderboard as it stands, preloaded high scores first.
+     *
+     * @return A copy of the leaderboard
+     */
+    public synchronized List<ElympicsHighscore> getHighscores() {
+        List<ElympicsHighscore> highscores = new ArrayList<>(preloaded.size() + submitted.size());
+        highscores.addAll(preloaded);
+        highscores.addAll(submitted.values());
+        return highscores;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        requests.increment();
+        try {
+            Map<String, String> params = readParams(exchange);
+            long delay = latency.nextNanos(ThreadLocalRandom.current());
+            if (delay > 0) TimeUnit.NANOSECONDS.sleep(delay);
+
+            double fault = ThreadLocalRandom.current().nextDouble();
+            if (fault < resetRate) {
+                faults.increment();
+                return; // closed below without a response
+            }
+            if ((fault -= resetRate) < rateLimitRate) {
+                faults.increment();
+                exchange.getResponseHeaders().add("Retry-After", Integer.toString(retryAfterSeconds));
+                send(exchange, HttpURLConnection.HTTP_FORBIDDEN, "{\"message\":\"Rate limit exceeded\"}");
+                return;
+            }
+            if (fault - rateLimitRate < serverErrorRate) {
+                faults.increment();
+                send(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "{\"message\":\"Service unavailable\"}");
+                return;
+            }
+
+            String key = exchange.getRequestHeaders().getFirst("key");
+            if (key == null) key = params.get("key");
+            if (!isAccepted(key)) {
+                send(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, "{\"message\":\"Invalid key\"}");
+                return;
+            }
+            handler.handle(exchange, params);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while delaying the response");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized boolean isAccepted(String key) {
+        return keys.isEmpty() || keys.contains(key);
+    }
+
+    private void getHighscores(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Rendered current = render();
+        String page = params.get("page");
+        int index = page != null ? Integer.parseInt(page) : 0;
+        if (index < 0 || index >= current.pages.length) {
+            send(exchange, HttpURLConnection.HTTP_NOT_FOUND, "{\"message\":\"No such page\"}");
+            return;
+        }
+        exchange.getResponseHeaders().add("ETag", current.etag);
+        if (index == 0 && current.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            return;
+        }
+        if (index + 1 < current.pages.length) {
+            exchange.getResponseHeaders().add("Link",
+                    "<" + getEndpoint() + "/getHighscores?page=" + (index + 1) + ">; rel=\"next\"");
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        byte[] body = current.pages[index];
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            body = current.gzippedPages[index];
+        }
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void submitHighscore(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String name = params.get("name");
+        BigInteger score;
+        try {
+            score = new BigInteger(params.get("score"));
+        } catch (NullPointerException | NumberFormatException e) {
+            send(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "{\"message\":\"Invalid score\"}");
+            return;
+        }
+        synchronized (this) {
+            ElympicsHighscore previous = submitted.get(name);
+            if (previous == null || score.compareTo(previous.getScore()) > 0) {
+                submitted.put(name, new ElympicsHighscore(name, score));
+                version++;
+            }
+        }
+        send(exchange, HttpURLConnection.HTTP_OK, "{}");
+    }
+
+    /**
+     * Gets the current leaderboard pages, rendering them if a submission changed the leaderboard. Rendering happens
+     * outside the emulator's lock, so submissions are not held up by it.
+     */
+    private Rendered render() throws IOException {
+        Rendered current = rendered;
+        if (current != null && current.version == getVersion()) return current;
+        synchronized (renderLock) {
+            long renderedVersion;
+            List<ElympicsHighscore> highscores;
+            synchronized (this) {
+                current = rendered;
+                if (current != null && current.version == version) return current;
+                renderedVersion = version;
+                highscores = getHighscores();
+            }
+            current = new Rendered(renderedVersion, paginate(highscores));
+            rendered = current;
+            return current;
+        }
+    }
+
+    private synchronized long getVersion() {
+        return version;
+    }
+
+    private byte[][] paginate(List<ElympicsHighscore> highscores) {
+        int perPage = pageSize > 0 ? pageSize : Math.max(1, highscores.size());
+        int pageCount = Math.max(1, (highscores.size() + perPage - 1) / perPage);
+        byte[][] pages = new byte[pageCount][];
+        for (int page = 0; page < pageCount; page++) {
+            int from = page * perPage;
+            pages[page] = toJson(highscores.subList(from, Math.min(highscores.size(), from + perPage)));
+        }
+        return pages;
+    }
+
+    /**
+     * Generates high scores from 50000 distinct players with scores scattered over {@code [0, 100000000)}.
+     *
+     * @param count The number of high scores
+     * @return The high scores
+     */
+    public static List<ElympicsHighscore> generateHighscores(int count) {
+        ElympicsHighscore[] highscores = new ElympicsHighscore[count];
+        for (int i = 0; i < count; i++) {
+            highscores[i] = new ElympicsHighscore("player" + (i % 50000), (i * 2654435761L) % 100000000L);
+        }
+        return Arrays.asList(highscores);
+    }
+
+    /**
+     * Renders high scores the way the API does.
+     */
+    static byte[] toJson(List<ElympicsHighscore> highscores) {
+        StringBuilder json = new StringBuilder(highscores.size() * 40 + 2).append('[');
+        for (int i = 0; i < highscores.size(); i++) {
+            ElympicsHighscore highscore = highscores.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"name\":");
+            appendString(json, highscore.getName());
+            json.append(",\"score\":");
+            if (highscore.hasLongScore()) {
+                json.append(highscore.getLongScore());
+            } else {
+                json.append(highscore.getScore());
+            }
+            json.append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        String contentType = exchange.getRequestHeaders().getFirst("Content-type");
+        if (contentType == null || contentType.startsWith("application/x-www-form-urlencoded")) {
+            parseForm(new String(body.toByteArray(), StandardCharsets.US_ASCII), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) throws IOException {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator != -1 ? pair.substring(0, separator) : pair;
+            String value = separator != -1 ? pair.substring(separator + 1) : "";
+            params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+}
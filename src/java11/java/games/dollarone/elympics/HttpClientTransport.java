@@ -0,0 +1,225 @@
+package games.dollarone.elympics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link HttpTransport} built on {@link HttpClient}, which keeps a pool of connections and multiplexes concurrent
+ * requests over HTTP/2 where the server supports it. Custom verbs are sent as they are.
+ *
+ * The client publishes a request body rather than letting it be written, so bodies are buffered and sent once the
+ * response is asked for. This class needs Java 11 and is only loaded by {@link HttpTransport#httpClient()}.
+ *
+ * Before Java 16, cancelling the future returned by {@link HttpClient#sendAsync} does not abort the exchange: the
+ * request carries on and its response is dropped, holding the connection until the unread body is collected. A
+ * disconnected exchange therefore waits for its response and closes the body, which aborts the exchange then.
+ */
+final class HttpClientTransport implements HttpTransport {
+
+    /**
+     * Whether cancelling the client's future aborts the exchange, which it does from Java 16.
+     */
+    private static final boolean CANCEL_ABORTS = Runtime.version().feature() >= 16;
+
+    private final HttpClient client;
+    private final Duration timeout;
+
+    HttpClientTransport() {
+        this(HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(ImpatientHttpConnector.CONNECT_TIMEOUT))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build(), Duration.ofMillis(ImpatientHttpConnector.READ_TIMEOUT));
+    }
+
+    /**
+     * @param client The client, whose connections are shared by every request
+     * @param timeout How long to wait for the response headers of each request
+     */
+    HttpClientTransport(HttpClient client, Duration timeout) {
+        this.client = client;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Exchange open(URL url, String method) throws IOException {
+        try {
+            return new ClientExchange(url, method, HttpRequest.newBuilder(url.toURI()).timeout(timeout));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Cannot request " + url, e);
+        }
+    }
+
+    private final class ClientExchange implements Exchange {
+        private final URL url;
+        private final String method;
+        private final HttpRequest.Builder request;
+        private Body body;
+        /**
+         * The client's future, and the copy callers wait on, which can be cancelled without losing the response.
+         */
+        private volatile CompletableFuture<HttpResponse<InputStream>> sent;
+        private volatile CompletableFuture<HttpResponse<InputStream>> response;
+        private volatile boolean disconnected;
+
+        private ClientExchange(URL url, String method, HttpRequest.Builder request) {
+            this.url = url;
+            this.method = method;
+            this.request = request;
+        }
+
+        @Override
+        public URL getURL() {
+            return url;
+        }
+
+        @Override
+        public void setRequestProperty(String name, String value) {
+            try {
+                request.setHeader(name, value);
+            } catch (IllegalArgumentException e) {
+                // a header the client sets itself, such as Connection, which HttpURLConnection ignores as well
+            }
+        }
+
+        @Override
+        public void setBodyLength(long length, int chunkSize) {
+            body = new Body(length >= 0 && length < Integer.MAX_VALUE ? (int) length : 8192);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (body == null) send();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if (body == null) throw new ProtocolException("Request " + method + " " + url + " has no body");
+            return body;
+        }
+
+        private synchronized CompletableFuture<HttpResponse<InputStream>> send() {
+            if (response == null) {
+                HttpRequest.BodyPublisher publisher = body != null
+                        ? body.publisher()
+                        : HttpRequest.BodyPublishers.noBody();
+                sent = client.sendAsync(request.method(method, publisher).build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                response = sent.copy();
+                if (disconnected) abort();
+            }
+            return response;
+        }
+
+        private HttpResponse<InputStream> response() throws IOException {
+            CompletableFuture<HttpResponse<InputStream>> future = send();
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException("Request " + method + " " + url + " failed", e.getCause());
+            } catch (CancellationException e) {
+                throw new IOException("Request " + method + " " + url + " was cancelled", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new InterruptedIOException("Interrupted while waiting for " + url);
+            }
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return response().statusCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            response();
+            return null; // HttpClient does not expose the reason phrase
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            try {
+                return response().headers().firstValue(name).orElse(null);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            HttpResponse<InputStream> current = response();
+            int code = current.statusCode();
+            if (code == 404 || code == 410) throw new FileNotFoundException(url.toString());
+            if (code >= 400) throw new IOException("Server returned HTTP response code: " + code + " for URL: " + url);
+            return current.body();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            HttpResponse<InputStream> current = completed();
+            return current != null && current.statusCode() >= 400 ? current.body() : null;
+        }
+
+        @Override
+        public void disconnect() {
+            disconnected = true;
+            if (response != null) abort();
+        }
+
+        /**
+         * Fails anyone waiting for the response, and aborts the exchange as soon as it can be.
+         */
+        private void abort() {
+            response.cancel(true);
+            if (CANCEL_ABORTS) sent.cancel(true);
+            // runs now if the response has arrived, otherwise when it does
+            sent.thenAccept(current -> {
+                try {
+                    // closing the body before it is read to the end aborts the exchange
+                    current.body().close();
+                } catch (IOException e) {
+                    // nothing left to abort
+                }
+            });
+        }
+
+        /**
+         * Gets the response if it has arrived, without waiting for it.
+         */
+        private HttpResponse<InputStream> completed() {
+            CompletableFuture<HttpResponse<InputStream>> future = response;
+            if (future == null || !future.isDone() || future.isCompletedExceptionally()) return null;
+            return future.join();
+        }
+    }
+
+    /**
+     * Buffers a request body, handing its buffer to the client without copying it.
+     */
+    private static final class Body extends ByteArrayOutputStream {
+
+        private Body(int size) {
+            super(size);
+        }
+
+        private synchronized HttpRequest.BodyPublisher publisher() {
+            return HttpRequest.BodyPublishers.ofByteArray(buf, 0, count);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package games.dollarone.elympics;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.VisibilityChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.ANY;
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
+import static games.dollarone.elympics.Elympics.MAPPER;
+
+/**
+ * Decoding a leaderboard response body without the network, as done by {@code Requester.parse}, against the reflective
+ * bean binding that {@link Elympics#MAPPER} used before it registered {@link ElympicsHighscoreDeserializer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    /**
+     * Configured as {@link Elympics#MAPPER}, without its deserializers.
+     */
+    private static final ObjectMapper BEAN_MAPPER = new ObjectMapper();
+
+    static {
+        BEAN_MAPPER.setVisibilityChecker(new VisibilityChecker.Std(NONE, NONE, NONE, NONE, ANY));
+        BEAN_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Param({"100", "2000000"})
+    public int entries;
+
+    private byte[] json;
+    private String data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        json = ElympicsEmulator.toJson(ElympicsEmulator.generateHighscores(entries));
+        data = new String(json, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The baseline: the body read into a {@link String}, then bound field by field through reflection.
+     */
+    @Benchmark
+    public ElympicsHighscore[] beanBindingFromString() throws IOException {
+        return BEAN_MAPPER.readValue(data, ElympicsHighscore[].class);
+    }
+
+    /**
+     * The body read into a {@link String}, then bound.
+     */
+    @Benchmark
+    public ElympicsHighscore[] readValueFromString() throws IOException {
+        return MAPPER.readValue(data, ElympicsHighscore[].class);
+    }
+
+    @Benchmark
+    public ElympicsHighscore[] readValueFromBytes() throws IOException {
+        return MAPPER.readValue(json, ElympicsHighscore[].class);
+    }
+
+    /**
+     * The cached reader used by {@code Requester.parse}, skipping the lookup of the root deserializer.
+     */
+    @Benchmark
+    public ElympicsHighscore[] cachedReaderFromString() throws IOException {
+        return Elympics.reader(ElympicsHighscore[].class).readValue(data);
+    }
+
+}
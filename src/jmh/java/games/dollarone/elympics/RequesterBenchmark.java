@@ -0,0 +1,92 @@
+package games.dollarone.elympics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end request/response benchmarks against a local {@link ElympicsEmulator}: building and sending a submission,
+ * and fetching, decoding and merging the pages of a leaderboard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RequesterBenchmark {
+
+    @Param({"100", "2000000"})
+    public int entries;
+
+    @Param({"1", "20"})
+    public int pages;
+
+    private ElympicsEmulator emulator;
+    private Elympics elympics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        emulator = new ElympicsEmulator()
+                .withGeneratedHighscores(entries)
+                .withPageSize((entries + pages - 1) / pages)
+                .start();
+        elympics = new ElympicsBuilder()
+                .withEndpoint(emulator.getEndpoint())
+                .withKey("benchmark")
+                .withRetryPolicy(RetryPolicy.NONE)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        emulator.close();
+    }
+
+    @Benchmark
+    public void submitHighscore() throws IOException {
+        elympics.submitHighscore("player & friends", 9001);
+    }
+
+    @Benchmark
+    public List<ElympicsHighscore> getHighscores() throws IOException {
+        return elympics.getHighscores();
+    }
+
+    @Benchmark
+    public long streamHighscores() throws IOException {
+        try (CloseableIterator<ElympicsHighscore> highscores = elympics.iterateHighscores()) {
+            long count = 0;
+            while (highscores.hasNext()) {
+                highscores.next();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Benchmark
+    public void queryString() throws IOException {
+        new Requester(elympics)
+                .with("key", "benchmark")
+                .with("name", "player & friends")
+                .with("score", 9001)
+                .method("GET")
+                .to("/submitHighscore");
+    }
+
+}
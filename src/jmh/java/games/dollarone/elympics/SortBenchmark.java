@@ -0,0 +1,60 @@
+package games.dollarone.elympics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering a leaderboard with {@link ElympicsHighscore#compareTo(ElympicsHighscore)}, as the README shows, compared to
+ * building the sorted columnar {@link ElympicsLeaderboard} and the {@link ElympicsRankIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark {
+
+    @Param({"1000", "2000000"})
+    public int entries;
+
+    private List<ElympicsHighscore> highscores;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        highscores = ElympicsEmulator.generateHighscores(entries);
+    }
+
+    @Benchmark
+    public List<ElympicsHighscore> sortList() {
+        List<ElympicsHighscore> sorted = new ArrayList<>(highscores);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public ElympicsLeaderboard buildLeaderboard() {
+        return ElympicsLeaderboard.of(highscores);
+    }
+
+    @Benchmark
+    public ElympicsRankIndex buildRankIndex() {
+        return ElympicsRankIndex.of(highscores);
+    }
+
+}
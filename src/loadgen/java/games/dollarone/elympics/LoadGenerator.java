@@ -0,0 +1,270 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of {@code getHighscores} and {@code submitHighscore} calls against an endpoint and reports throughput,
+ * latency percentiles, errors and retries.
+ *
+ * Calls arrive open loop at the configured rate, whether or not earlier calls have completed, and their latency is
+ * measured from when they were due rather than from when a thread got round to them. A slow endpoint therefore shows
+ * up as queueing in the percentiles instead of as a lower request rate, which avoids coordinated omission.
+ *
+ * Options are given as {@code --name=value}:
+ * <ul>
+ * <li>{@code endpoint}: the API to load, defaults to an in-process {@link ElympicsEmulator}</li>
+ * <li>{@code key}: the API key, defaults to {@code loadgen}</li>
+ * <li>{@code rate}: calls per second, defaults to 100</li>
+ * <li>{@code duration}, {@code warmup}: seconds measured and seconds run before measuring, default 30 and 5</li>
+ * <li>{@code reads}: fraction of calls that read the leaderboard, defaults to 0.8</li>
+ * <li>{@code arrivals}: {@code poisson} or {@code uniform}, defaults to {@code poisson}</li>
+ * <li>{@code threads}: threads making calls, defaults to 64, or {@code virtual} for a virtual thread per call</li>
+ * <li>{@code cache-ms}, {@code hedge-ms}, {@code max-attempts}, {@code compression}: client configuration</li>
+ * <li>{@code transport}: {@code urlconnection} or {@code httpclient}, defaults to {@code urlconnection}</li>
+ * <li>{@code entries}, {@code page-size}, {@code median-ms}, {@code p99-ms}, {@code fault-rate}: emulator
+ * configuration</li>
+ * </ul>
+ */
+public final class LoadGenerator {
+
+    private static final String[] OPERATIONS = {"getHighscores", "submitHighscore"};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Elympics elympics;
+    private final InMemoryRequestMetrics metrics;
+    private final ExecutorService executor;
+    private final double rate;
+    private final double reads;
+    private final boolean poisson;
+
+    private final Map<String, LatencyHistogram> latencies = new HashMap<>();
+    private final Map<String, LongAdder> successes = new HashMap<>();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+    private LoadGenerator(Elympics elympics, InMemoryRequestMetrics metrics, ExecutorService executor, double rate,
+                          double reads, boolean poisson) {
+        this.elympics = elympics;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.rate = rate;
+        this.reads = reads;
+        this.poisson = poisson;
+        for (String operation : OPERATIONS) {
+            latencies.put(operation, new LatencyHistogram());
+            successes.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        ElympicsEmulator emulator = null;
+        String endpoint = options.get("endpoint");
+        if (endpoint == null) {
+            long median = Long.parseLong(option(options, "median-ms", "20"));
+            long p99 = Long.parseLong(option(options, "p99-ms", "200"));
+            double faultRate = Double.parseDouble(option(options, "fault-rate", "0"));
+            emulator = new ElympicsEmulator()
+                    .withGeneratedHighscores(Integer.parseInt(option(options, "entries", "10000")))
+                    .withPageSize(Integer.parseInt(option(options, "page-size", "0")))
+                    .withLatency(median > 0
+                            ? ElympicsEmulator.Latency.logNormal(median, Math.max(median, p99), TimeUnit.MILLISECONDS)
+                            : ElympicsEmulator.Latency.NONE)
+                    .withRateLimitRate(faultRate / 3, 1)
+                    .withServerErrorRate(faultRate / 3)
+                    .withResetRate(faultRate / 3)
+                    .start();
+            endpoint = emulator.getEndpoint();
+        }
+
+        String threads = option(options, "threads", "64");
+        boolean virtual = "virtual".equals(threads);
+        ExecutorService executor = virtual
+                ? ElympicsExecutors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(Integer.parseInt(threads),
+                        ElympicsExecutors.daemonThreadFactory("elympics-loadgen"));
+        // the client's hedges and revalidations must not queue behind the calls saturating the load threads
+        ExecutorService clientExecutor = virtual
+                ? ElympicsExecutors.newVirtualThreadPerTaskExecutor()
+                : ElympicsExecutors.newDaemonCachedThreadPool("elympics-loadgen-client");
+        InMemoryRequestMetrics metrics = new InMemoryRequestMetrics();
+        ElympicsBuilder builder = new ElympicsBuilder()
+                .withEndpoint(endpoint)
+                .withKey(option(options, "key", "loadgen"))
+                .withExecutor(clientExecutor)
+                .withMetrics(metrics);
+        if (options.containsKey("max-attempts")) {
+            builder.withRetryPolicy(new RetryPolicy(Integer.parseInt(options.get("max-attempts")),
+                    500, 30000, 60000, TimeUnit.MILLISECONDS));
+        }
+        if (options.containsKey("cache-ms")) {
+            builder.withCache(Long.parseLong(options.get("cache-ms")), TimeUnit.MILLISECONDS);
+        }
+        if (options.containsKey("hedge-ms")) {
+            builder.withHedging(HedgePolicy.fixedDelay(Long.parseLong(options.get("hedge-ms")), TimeUnit.MILLISECONDS,
+                    0.05));
+        }
+        if ("httpclient".equals(option(options, "transport", "urlconnection"))) {
+            builder.withHttpClient();
+        }
+        if (options.containsKey("compression")) {
+            builder.withRequestCompression(Integer.parseInt(options.get("compression")));
+        }
+
+        double rate = Double.parseDouble(option(options, "rate", "100"));
+        LoadGenerator generator = new LoadGenerator(builder.build(), metrics, executor, rate,
+                Double.parseDouble(option(options, "reads", "0.8")),
+                !"uniform".equals(option(options, "arrivals", "poisson")));
+        long warmup = Long.parseLong(option(options, "warmup", "5"));
+        long duration = Long.parseLong(option(options, "duration", "30"));
+        System.out.printf("Loading %s at %.1f calls/s for %ds after %ds of warmup, %s threads%n",
+                endpoint, rate, duration, warmup, threads);
+        generator.run(TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(duration));
+        executor.shutdownNow();
+        clientExecutor.shutdownNow();
+        if (emulator != null) emulator.close();
+    }
+
+    private void run(long warmupNanos, long durationNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        Map<String, InMemoryRequestMetrics.EndpointSnapshot> before = null;
+        long meanIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long due = start;
+        while (due < end) {
+            if (before == null && due >= measureFrom) before = metrics.snapshot();
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            // if the generator fell behind, calls are sent straight away, still timed from when they were due
+            final long scheduled = due;
+            boolean read = ThreadLocalRandom.current().nextDouble() < reads;
+            executor.execute(() -> call(read, scheduled));
+            due += poisson
+                    ? (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos)
+                    : meanIntervalNanos;
+        }
+        long sent = System.nanoTime();
+        // give outstanding calls a chance to complete before reporting
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+        report(before != null ? before : new HashMap<>(), metrics.snapshot(), (end - measureFrom) / 1e9,
+                (sent - end) / 1e6);
+    }
+
+    private void call(boolean read, long scheduled) {
+        String operation = read ? OPERATIONS[0] : OPERATIONS[1];
+        try {
+            if (read) {
+                elympics.getHighscores();
+            } else {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                elympics.submitHighscore("loadgen-player" + random.nextInt(10000), random.nextInt(100000000));
+            }
+            if (scheduled >= measureFrom) {
+                latencies.get(operation).record(System.nanoTime() - scheduled);
+                successes.get(operation).increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (scheduled >= measureFrom) {
+                errors.computeIfAbsent(operation + " " + e.getClass().getSimpleName(), k -> new LongAdder())
+                        .increment();
+            }
+        }
+    }
+
+    private void report(Map<String, InMemoryRequestMetrics.EndpointSnapshot> before,
+                        Map<String, InMemoryRequestMetrics.EndpointSnapshot> after, double seconds,
+                        double lagMillis) {
+        long completed = 0;
+        for (LongAdder count : successes.values()) {
+            completed += count.sum();
+        }
+        long failed = 0;
+        for (LongAdder count : errors.values()) {
+            failed += count.sum();
+        }
+        System.out.printf("%nThroughput: %.1f calls/s succeeded, %.1f calls/s failed (%.2f%%)%n",
+                completed / seconds, failed / seconds, 100.0 * failed / Math.max(1, completed + failed));
+        if (lagMillis > 1) {
+            System.out.printf("Generator fell %.1fms behind schedule, lower the rate or add threads%n", lagMillis);
+        }
+
+        System.out.printf("%nLatency from scheduled start (ms)%n%-16s %9s", "", "count");
+        for (double percentile : PERCENTILES) {
+            System.out.printf(" %9s", "p" + format(percentile));
+        }
+        System.out.printf(" %9s %9s%n", "max", "mean");
+        for (String operation : OPERATIONS) {
+            LatencyHistogram.Snapshot snapshot = latencies.get(operation).snapshot();
+            System.out.printf("%-16s %9d", operation, snapshot.getCount());
+            for (double percentile : PERCENTILES) {
+                System.out.printf(" %9.2f", snapshot.getPercentile(percentile, TimeUnit.MILLISECONDS));
+            }
+            System.out.printf(" %9.2f %9.2f%n", snapshot.getMax() / 1e6, snapshot.getMean() / 1e6);
+        }
+
+        if (!errors.isEmpty()) {
+            System.out.printf("%nErrors%n");
+            for (Map.Entry<String, LongAdder> error : new TreeMap<>(errors).entrySet()) {
+                System.out.printf("%-48s %9d%n", error.getKey(), error.getValue().sum());
+            }
+        }
+
+        System.out.printf("%nRequests%n%-16s %9s %9s %9s %9s %9s  %s%n", "", "attempts", "retries", "hedges",
+                "cache hit", "coalesced", "response codes");
+        for (Map.Entry<String, InMemoryRequestMetrics.EndpointSnapshot> endpoint : new TreeMap<>(after).entrySet()) {
+            InMemoryRequestMetrics.EndpointSnapshot current = endpoint.getValue();
+            InMemoryRequestMetrics.EndpointSnapshot previous = before.get(endpoint.getKey());
+            Map<Integer, Long> codes = new TreeMap<>(current.getResponseCodes());
+            if (previous != null) {
+                for (Map.Entry<Integer, Long> code : previous.getResponseCodes().entrySet()) {
+                    codes.merge(code.getKey(), -code.getValue(), Long::sum);
+                }
+            }
+            codes.values().removeIf(count -> count == 0);
+            System.out.printf("%-16s %9d %9d %9d %9d %9d  %s%n", endpoint.getKey(),
+                    current.getRequests() - (previous != null ? previous.getRequests() : 0),
+                    current.getRetries() - (previous != null ? previous.getRetries() : 0),
+                    current.getHedges() - (previous != null ? previous.getHedges() : 0),
+                    current.getCacheHits() - (previous != null ? previous.getCacheHits() : 0),
+                    current.getCoalesced() - (previous != null ? previous.getCoalesced() : 0),
+                    codes);
+        }
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            int separator = arg.indexOf('=');
+            if (separator == -1) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+}
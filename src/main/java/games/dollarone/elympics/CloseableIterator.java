@@ -0,0 +1,15 @@
+package games.dollarone.elympics;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An {@link Iterator} holding resources, such as an open connection, which must be closed if it is not exhausted.
+ *
+ * Failures while advancing the iterator are thrown as {@link java.io.UncheckedIOException}.
+ *
+ * @param <T> The type of the elements
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+}
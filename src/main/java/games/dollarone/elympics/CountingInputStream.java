@@ -0,0 +1,65 @@
+package games.dollarone.elympics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} wrapper that counts the bytes read through it, and optionally runs a callback once closed.
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private long count;
+    private Runnable onClose;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    CountingInputStream(InputStream in, Runnable onClose) {
+        super(in);
+        this.onClose = onClose;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) count++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) count += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            Runnable callback = onClose;
+            onClose = null;
+            if (callback != null) callback.run();
+        }
+    }
+
+}
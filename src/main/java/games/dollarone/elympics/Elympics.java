@@ -1,14 +1,34 @@
 package games.dollarone.elympics;
 
+import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.introspect.VisibilityChecker;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.ANY;
 import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
@@ -16,28 +36,81 @@ import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
 /**
  * Root of the Elympics API.
  */
-public final class Elympics {
+public final class Elympics implements Closeable {
 
     static final ObjectMapper MAPPER = new ObjectMapper();
 
     static {
         MAPPER.setVisibilityChecker(new VisibilityChecker.Std(NONE, NONE, NONE, NONE, ANY));
         MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        MAPPER.registerModule(new SimpleModule("elympics", Version.unknownVersion())
+                .addDeserializer(ElympicsHighscore.class, ElympicsHighscoreDeserializer.INSTANCE)
+                .addDeserializer(ElympicsHighscore[].class, ElympicsHighscoreDeserializer.Array.INSTANCE));
+    }
+
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    /**
+     * Gets a reader of the given type, created once per type so its root deserializer is only looked up once.
+     */
+    static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(type, MAPPER::reader);
     }
 
     static final String ELYMPICS_URL = "https://dollarone.games/elympics";
 
+    private static final int JOURNAL_REPLAY_BATCH_SIZE = 50;
+
     private final String apiUrl;
 
     final String key;
 
     private HttpConnector connector = HttpConnector.DEFAULT;
 
-    Elympics(String apiUrl, String key, HttpConnector connector) {
+    private HttpTransport transport = HttpTransport.DEFAULT;
+
+    private final Executor executor;
+
+    private final ConcurrentMap<String, URL> endpointUrls = new ConcurrentHashMap<>();
+
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+
+    private ElympicsRateLimiter rateLimiter;
+
+    private RequestMetrics metrics = RequestMetrics.NONE;
+
+    private HedgePolicy hedgePolicy;
+
+    private final SingleFlight<String, LeaderboardCache.Entry> highscoreReads = new SingleFlight<>();
+
+    private boolean sharedResults;
+
+    private int requestCompressionThreshold = -1;
+
+    private int chunkSize;
+
+    private HighscoreSubmissionQueue submissionQueue;
+
+    private LeaderboardCache cache;
+
+    private SubmissionJournal journal;
+
+    private final AtomicBoolean replayingJournal = new AtomicBoolean();
+
+    private volatile CompletableFuture<Integer> journalReplay;
+
+    private volatile boolean closed;
+
+    private volatile boolean journalBacklog;
+
+    private volatile ElympicsRankIndex rankIndex;
+
+    Elympics(String apiUrl, String key, HttpConnector connector, Executor executor) {
         if (apiUrl.endsWith("/")) apiUrl = apiUrl.substring(0, apiUrl.length() - 1);
         this.apiUrl = apiUrl;
-        if (connector != null) this.connector = connector;
+        if (connector != null) setConnector(connector);
         this.key = key;
+        this.executor = executor != null ? executor : ElympicsExecutors.defaultExecutor();
     }
 
     public static Elympics connect(String key) {
@@ -51,15 +124,188 @@ public final class Elympics {
      */
     public void setConnector(HttpConnector connector) {
         this.connector = connector;
+        this.transport = new HttpURLConnectionTransport(connector);
     }
 
     public HttpConnector getConnector() {
         return connector;
     }
 
+    /**
+     * Sets the transport used to make requests to Elympics, replacing the {@linkplain #setConnector(HttpConnector)
+     * connector}.
+     *
+     * @param transport The transport
+     */
+    public void setTransport(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Gets the executor that asynchronous calls such as {@link #getHighscoresAsync()} run their requests on.
+     *
+     * @return The executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the policy deciding whether and when failed requests are retried.
+     *
+     * @param retryPolicy The retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the limiter that requests wait for before being made.
+     *
+     * @param rateLimiter The rate limiter, or {@code null} to make requests without limits
+     */
+    public void setRateLimiter(ElympicsRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public ElympicsRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the metrics that requests are reported to.
+     *
+     * @param metrics The metrics
+     */
+    public void setMetrics(RequestMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RequestMetrics.NONE;
+    }
+
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the policy for hedging slow leaderboard reads made by {@link #getHighscores()}.
+     *
+     * @param hedgePolicy The hedge policy, or {@code null} to never hedge reads
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * Sets whether {@link #getHighscores()} returns the same unmodifiable list to every caller sharing a request or
+     * a cached leaderboard, instead of a copy that each caller may modify. Sharing saves copying the leaderboard for
+     * every call when many callers read it at once.
+     *
+     * @param sharedResults {@code true} to return shared unmodifiable lists
+     */
+    public void setSharedResults(boolean sharedResults) {
+        this.sharedResults = sharedResults;
+    }
+
+    public boolean isSharedResults() {
+        return sharedResults;
+    }
+
+    /**
+     * Sets the size from which request bodies are sent compressed with {@code Content-Encoding: gzip}. Streamed
+     * bodies of unknown length are always compressed when this is enabled.
+     *
+     * @param threshold The size in bytes, or {@code -1} to never compress request bodies
+     */
+    public void setRequestCompressionThreshold(int threshold) {
+        this.requestCompressionThreshold = threshold;
+    }
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /**
+     * Sets the chunk size used to stream request bodies whose length is not known up front. Without chunked streaming,
+     * {@link java.net.HttpURLConnection} buffers the whole body in memory before sending it.
+     *
+     * @param chunkSize The chunk size in bytes, or {@code 0} to buffer such bodies
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    void setSubmissionQueue(int batchSize, long maxDelay, TimeUnit unit, int parallelism) {
+        this.submissionQueue = new HighscoreSubmissionQueue(this, batchSize, maxDelay, unit, parallelism);
+    }
+
+    /**
+     * Gets the queue used by {@link #queueHighscore(ElympicsHighscore)}.
+     *
+     * @return The submission queue, or {@code null} if none was configured
+     * @see ElympicsBuilder#withSubmissionQueue(int, long, TimeUnit, int)
+     */
+    public HighscoreSubmissionQueue getSubmissionQueue() {
+        return submissionQueue;
+    }
+
+    void setCache(long ttl, long staleWhileRevalidate, TimeUnit unit, LeaderboardCacheBudget budget) {
+        this.cache = new LeaderboardCache(this, ttl, staleWhileRevalidate, unit, budget);
+    }
+
+    void setSnapshot(File file) {
+        cache.setSnapshot(new LeaderboardSnapshot(this, file));
+    }
+
+    /**
+     * Gets the cache in front of {@link #getHighscores()}.
+     *
+     * @return The cache, or {@code null} if none was configured
+     * @see ElympicsBuilder#withCache(long, long, TimeUnit)
+     */
+    public LeaderboardCache getCache() {
+        return cache;
+    }
+
+    void setJournal(File file, SubmissionJournal.FsyncPolicy fsyncPolicy) throws IOException {
+        this.journal = new SubmissionJournal(file, fsyncPolicy, executor);
+        this.journalBacklog = journal.getPendingCount() > 0;
+    }
+
+    /**
+     * Gets the journal that submissions are recorded in until Elympics acknowledges them.
+     *
+     * @return The journal, or {@code null} if none was configured
+     * @see ElympicsBuilder#withJournal(File, SubmissionJournal.FsyncPolicy)
+     */
+    public SubmissionJournal getJournal() {
+        return journal;
+    }
+
     URL getApiURL(String tailApiUrl) throws IOException {
         if (tailApiUrl.startsWith("/")) {
-            return new URL(apiUrl + tailApiUrl);
+            if (tailApiUrl.indexOf('?') != -1) return new URL(apiUrl + tailApiUrl);
+            // endpoints without a query string are few, so their URLs are parsed once
+            URL url = endpointUrls.get(tailApiUrl);
+            if (url == null) {
+                url = new URL(apiUrl + tailApiUrl);
+                endpointUrls.put(tailApiUrl, url);
+            }
+            return url;
         } else {
             return new URL(tailApiUrl);
         }
@@ -69,22 +315,254 @@ public final class Elympics {
         return new Requester(this).method("GET");
     }
 
+    /**
+     * Gets every high score. Concurrent calls share a single request, and with a {@linkplain #getCache() cache} calls
+     * may not make a request at all.
+     *
+     * @return The high scores, either a copy the caller may modify or a shared unmodifiable list if
+     * {@linkplain #setSharedResults(boolean) shared results} are enabled
+     * @throws IOException If the request fails
+     */
     public List<ElympicsHighscore> getHighscores() throws IOException {
-        return Arrays.asList(
-                new Requester(this)
-                        .with("key", key)
-                        .method("POST")
-                        .to("/getHighscores", ElympicsHighscore[].class)
-        );
+        List<ElympicsHighscore> highscores = readHighscores();
+        return sharedResults ? highscores : new ArrayList<>(highscores);
+    }
+
+    /**
+     * Gets every high score as an unmodifiable list which may be shared with other callers.
+     */
+    List<ElympicsHighscore> readHighscores() throws IOException {
+        if (cache != null) return cache.get();
+        return fetchHighscores(null).highscores;
+    }
+
+    /**
+     * Gets the high scores as a compact {@link ElympicsLeaderboard}, sorted from best to worst score. Without a
+     * {@linkplain #getCache() cache}, the high scores are streamed straight into the leaderboard's columns as they
+     * are read, so they are never all held in memory as objects.
+     *
+     * @return The leaderboard
+     * @throws IOException If the request fails
+     */
+    public ElympicsLeaderboard getLeaderboard() throws IOException {
+        if (cache != null) return ElympicsLeaderboard.of(cache.get());
+        try (CloseableIterator<ElympicsHighscore> highscores = iterateHighscores()) {
+            return ElympicsLeaderboard.of(highscores);
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Gets the high scores as a {@link MappedLeaderboard} written to the given file, sorted from best to worst score,
+     * for leaderboards too large to hold on the heap. Without a {@linkplain #getCache() cache}, the high scores are
+     * streamed straight into the file as they are read, so they are never all held in memory.
+     *
+     * @param file The file to write the leaderboard to, replacing any leaderboard already in it
+     * @return The leaderboard, which must be closed once no longer used
+     * @throws IOException If the request fails or the file cannot be written
+     */
+    public MappedLeaderboard getMappedLeaderboard(File file) throws IOException {
+        if (cache != null) return MappedLeaderboard.write(file, cache.get().iterator());
+        try (CloseableIterator<ElympicsHighscore> highscores = iterateHighscores()) {
+            return MappedLeaderboard.write(file, highscores);
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Gets the high scores as an {@link ElympicsRankIndex} for rank queries. The returned index is kept up to date
+     * with the scores submitted through this instance until the next call to this method.
+     *
+     * @return The index
+     * @throws IOException If the request fails
+     */
+    public ElympicsRankIndex getRankIndex() throws IOException {
+        ElympicsRankIndex index = ElympicsRankIndex.of(readHighscores());
+        rankIndex = index;
+        return index;
+    }
+
+    /**
+     * Starts polling the high scores, notifying the watcher's listeners only of what changed between polls. The
+     * first poll happens straight away and reports every entry as inserted.
+     *
+     * @param period The delay between the end of one poll and the start of the next
+     * @param unit The unit of {@code period}
+     * @param listener The first listener, registered before the first poll
+     * @return The watcher, which must be closed to stop polling
+     */
+    public LeaderboardWatcher watchHighscores(long period, TimeUnit unit, LeaderboardListener listener) {
+        return new LeaderboardWatcher(this, period, unit, listener);
+    }
+
+    /**
+     * Creates a Reactive Streams publisher of the leaderboard, which polls the high scores while it has subscribers
+     * and emits the leaderboard whenever it changed.
+     *
+     * @param period The delay between the end of one poll and the start of the next
+     * @param unit The unit of {@code period}
+     * @return The publisher, which may be closed to complete every subscription
+     */
+    public LeaderboardPublisher publishHighscores(long period, TimeUnit unit) {
+        return new LeaderboardPublisher(this, period, unit);
+    }
+
+    /**
+     * Fetches the high scores, parsing each one as it is read from the connection instead of reading the whole
+     * response first. This always makes a request, bypassing the {@linkplain #getCache() cache}.
+     *
+     * @return An iterator over the high scores in the order returned by Elympics, which must be closed if it is not
+     * exhausted
+     * @throws IOException If the request fails
+     */
+    public CloseableIterator<ElympicsHighscore> iterateHighscores() throws IOException {
+        return new Requester(this)
+                .with("key", key)
+                .method("POST")
+                .idempotent()
+                .toIterator("/getHighscores", ElympicsHighscore.class);
+    }
+
+    /**
+     * Fetches the high scores one page at a time, only requesting the next page as the iterator advances. Closing the
+     * iterator stops fetching further pages. This always makes requests, bypassing the {@linkplain #getCache() cache}.
+     *
+     * @param prefetch Whether to fetch the next page on the {@linkplain #getExecutor() executor} while the current
+     *                 one is being consumed
+     * @return An iterator over the pages of high scores in the order returned by Elympics
+     * @throws IOException If the request for the first page fails
+     */
+    public CloseableIterator<ElympicsHighscore[]> iterateHighscorePages(boolean prefetch) throws IOException {
+        return new Requester(this)
+                .with("key", key)
+                .method("POST")
+                .idempotent()
+                .toPages("/getHighscores", ElympicsHighscore[].class, prefetch ? executor : null);
+    }
+
+    /**
+     * Fetches the first high scores in the order returned by Elympics, without requesting the pages after them.
+     *
+     * @param limit The maximum number of high scores to fetch
+     * @return The high scores
+     * @throws IOException If a request fails
+     */
+    public List<ElympicsHighscore> getHighscores(int limit) throws IOException {
+        List<ElympicsHighscore> highscores = new ArrayList<>();
+        if (limit <= 0) return highscores;
+        try (CloseableIterator<ElympicsHighscore[]> pages = iterateHighscorePages(false)) {
+            while (highscores.size() < limit && pages.hasNext()) {
+                ElympicsHighscore[] page = pages.next();
+                int count = Math.min(page.length, limit - highscores.size());
+                highscores.addAll(Arrays.asList(page).subList(0, count));
+            }
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        return highscores;
+    }
+
+    /**
+     * Like {@link #iterateHighscores()}, but as a sequential {@link Stream}. Closing the stream closes the
+     * connection.
+     *
+     * @return A stream of the high scores in the order returned by Elympics
+     * @throws IOException If the request fails
+     */
+    public Stream<ElympicsHighscore> streamHighscores() throws IOException {
+        CloseableIterator<ElympicsHighscore> iterator = iterateHighscores();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+    }
+
+    /**
+     * Fetches the high scores, as a conditional request if a previously fetched entry is given.
+     *
+     * @param cached The previously fetched entry to revalidate, or {@code null}
+     * @return The fetched entry, or {@code cached} with updated validators if the high scores were not modified
+     */
+    LeaderboardCache.Entry fetchHighscores(LeaderboardCache.Entry cached) throws IOException {
+        // concurrent reads only share a request if they would send the same conditional headers
+        String flight = cached == null ? "" : cached.etag + '\n' + cached.lastModified;
+        return highscoreReads.execute(flight, () -> requestHighscores(cached),
+                () -> metrics.recordCoalesced("/getHighscores"));
+    }
+
+    private LeaderboardCache.Entry requestHighscores(LeaderboardCache.Entry cached) throws IOException {
+        HedgePolicy hedge = hedgePolicy;
+        if (hedge == null) return fetchHighscores(cached, highscoresRequester(cached));
+        return hedge.execute(this, "/getHighscores", () -> highscoresRequester(cached),
+                requester -> fetchHighscores(cached, requester));
+    }
+
+    private Requester highscoresRequester(LeaderboardCache.Entry cached) {
+        Requester requester = new Requester(this)
+                .with("key", key)
+                .method("POST")
+                .idempotent();
+        if (cached != null) {
+            if (cached.etag != null) requester.setHeader("If-None-Match", cached.etag);
+            if (cached.lastModified != null) requester.setHeader("If-Modified-Since", cached.lastModified);
+        }
+        return requester;
+    }
+
+    private LeaderboardCache.Entry fetchHighscores(LeaderboardCache.Entry cached, Requester requester)
+            throws IOException {
+        ElympicsHighscore[] highscores = requester.to("/getHighscores", ElympicsHighscore[].class);
+        long now = System.currentTimeMillis();
+        String etag = requester.getResponseHeader("ETag");
+        String lastModified = requester.getResponseHeader("Last-Modified");
+        if (highscores == null) { // 304 Not Modified
+            if (cached == null) {
+                return new LeaderboardCache.Entry(Collections.emptyList(), now, etag, lastModified);
+            }
+            return cached.revalidated(now, etag, lastModified);
+        }
+        return new LeaderboardCache.Entry(Collections.unmodifiableList(Arrays.asList(highscores)), now, etag,
+                lastModified);
     }
 
     public void submitHighscore(String name, BigInteger score) throws IOException {
+        if (journal == null) {
+            sendHighscore(name, score);
+            return;
+        }
+        long id = journal.append(name, score);
+        boolean sent = false;
+        try {
+            sendHighscore(name, score);
+            sent = true;
+        } finally {
+            if (!sent) {
+                // whatever failed, the submission must be left for a replay to claim
+                journal.release(id);
+                journalBacklog = true;
+            }
+        }
+        journal.acknowledge(id);
+        if (journalBacklog) replayJournal();
+    }
+
+    private void sendHighscore(String name, BigInteger score) throws IOException {
         new Requester(this)
                 .with("key", key)
                 .with("name", name)
                 .with("score", score)
                 .method("POST")
                 .to("/submitHighscore");
+        if (cache != null) cache.expire();
+        ElympicsRankIndex index = rankIndex;
+        if (index != null) index.record(new ElympicsHighscore(name, score));
     }
 
     public void submitHighscore(ElympicsHighscore highscore) throws IOException {
@@ -95,4 +573,154 @@ public final class Elympics {
         submitHighscore(name, BigInteger.valueOf(score));
     }
 
+    /**
+     * Resends the submissions left unacknowledged in the {@linkplain #getJournal() journal}, in batches and in the
+     * order they were made. This is done when Elympics is built and again once a submission succeeds after others
+     * failed, so it only needs to be called to retry sooner.
+     *
+     * @return A future completed with the number of submissions replayed, or exceptionally with the
+     * {@link IOException} that stopped the replay
+     */
+    public CompletableFuture<Integer> replayJournal() {
+        if (journal == null || closed || !replayingJournal.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(0);
+        }
+        journalBacklog = false;
+        CompletableFuture<Integer> replay = async(() -> {
+            int replayed = 0;
+            List<SubmissionJournal.Entry> batch;
+            while (!closed && !(batch = journal.claim(JOURNAL_REPLAY_BATCH_SIZE)).isEmpty()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (closed) {
+                        for (int j = i; j < batch.size(); j++) {
+                            journal.release(batch.get(j).id);
+                        }
+                        return replayed;
+                    }
+                    SubmissionJournal.Entry entry = batch.get(i);
+                    boolean sent = false;
+                    try {
+                        sendHighscore(entry.name, entry.score);
+                        sent = true;
+                    } finally {
+                        if (!sent) {
+                            for (int j = i; j < batch.size(); j++) {
+                                journal.release(batch.get(j).id);
+                            }
+                            journalBacklog = true;
+                        }
+                    }
+                    journal.acknowledge(entry.id);
+                    replayed++;
+                }
+            }
+            return replayed;
+        });
+        journalReplay = replay;
+        replay.whenComplete((replayed, exception) -> replayingJournal.set(false));
+        return replay;
+    }
+
+    /**
+     * Like {@link #getHighscores()}, but runs the request on the {@linkplain #getExecutor() executor} instead of
+     * blocking the calling thread.
+     *
+     * @return A future completed with the high scores, or exceptionally with the {@link IOException} that occurred
+     */
+    public CompletableFuture<List<ElympicsHighscore>> getHighscoresAsync() {
+        return async(this::getHighscores);
+    }
+
+    /**
+     * Like {@link #submitHighscore(String, BigInteger)}, but runs the request on the {@linkplain #getExecutor()
+     * executor} instead of blocking the calling thread.
+     *
+     * @param name The name of the player
+     * @param score The score
+     * @return A future completed once the high score has been submitted, or exceptionally with the
+     * {@link IOException} that occurred
+     */
+    public CompletableFuture<Void> submitHighscoreAsync(String name, BigInteger score) {
+        return async(() -> {
+            submitHighscore(name, score);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> submitHighscoreAsync(ElympicsHighscore highscore) {
+        return submitHighscoreAsync(highscore.getName(), highscore.getScore());
+    }
+
+    public CompletableFuture<Void> submitHighscoreAsync(String name, long score) {
+        return submitHighscoreAsync(name, BigInteger.valueOf(score));
+    }
+
+    /**
+     * Adds a high score to the {@linkplain #getSubmissionQueue() submission queue}, where it is collapsed with other
+     * submissions for the same player and sent in a batch. If no queue was configured, the high score is submitted
+     * straight away as with {@link #submitHighscoreAsync(ElympicsHighscore)}.
+     *
+     * @param highscore The high score
+     * @return A future completed once the player's best buffered score has been submitted
+     */
+    public CompletableFuture<Void> queueHighscore(ElympicsHighscore highscore) {
+        if (submissionQueue == null) return submitHighscoreAsync(highscore);
+        return submissionQueue.submit(highscore);
+    }
+
+    public CompletableFuture<Void> queueHighscore(String name, BigInteger score) {
+        return queueHighscore(new ElympicsHighscore(name, score));
+    }
+
+    public CompletableFuture<Void> queueHighscore(String name, long score) {
+        return queueHighscore(new ElympicsHighscore(name, score));
+    }
+
+    /**
+     * Sends every high score buffered in the {@linkplain #getSubmissionQueue() submission queue}.
+     *
+     * @return A future completed once the buffered submissions have completed
+     */
+    public CompletableFuture<Void> flushHighscores() {
+        if (submissionQueue == null) return CompletableFuture.completedFuture(null);
+        return submissionQueue.flush();
+    }
+
+    /**
+     * Flushes the {@linkplain #getSubmissionQueue() submission queue}, waits for outstanding submissions, stops any
+     * {@linkplain #replayJournal() replay} after the submission it is sending and closes the
+     * {@linkplain #getJournal() journal}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (submissionQueue != null) submissionQueue.close();
+        if (journal != null) {
+            // a replay stops after the submission it is sending, which must be acknowledged before closing
+            CompletableFuture<Integer> replay = journalReplay;
+            if (replay != null) {
+                try {
+                    replay.join();
+                } catch (CompletionException | CancellationException exception) {
+                    // reported to whoever started the replay
+                }
+            }
+            try {
+                journal.close();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    <T> CompletableFuture<T> async(IOSupplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.get();
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            }
+        }, executor);
+    }
+
 }
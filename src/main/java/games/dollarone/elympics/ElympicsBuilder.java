@@ -1,7 +1,15 @@
 package games.dollarone.elympics;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configures connection details and produces {@link Elympics}
@@ -12,11 +20,91 @@ public final class ElympicsBuilder {
     private String key;
 
     private HttpConnector connector;
+    private HttpTransport transport;
+    private Executor executor;
+    private RetryPolicy retryPolicy;
+    private HedgePolicy hedgePolicy;
+    private boolean sharedResults;
+    private double rateLimit;
+    private int maxInFlight;
+    private RequestMetrics metrics;
+    private int requestCompressionThreshold = -1;
+    private int chunkSize;
+
+    private int submissionBatchSize;
+    private long submissionMaxDelay;
+    private TimeUnit submissionMaxDelayUnit;
+    private int submissionParallelism;
+
+    private long cacheTtl;
+    private long cacheStaleWhileRevalidate;
+    private TimeUnit cacheUnit;
+    private LeaderboardCacheBudget cacheBudget;
+    private File snapshotFile;
+
+    private File journalFile;
+    private SubmissionJournal.FsyncPolicy journalFsyncPolicy;
 
     public ElympicsBuilder() {
 
     }
 
+    private ElympicsBuilder(ElympicsBuilder template) {
+        this.endpoint = template.endpoint;
+        this.key = template.key;
+        this.connector = template.connector;
+        this.transport = template.transport;
+        this.executor = template.executor;
+        this.retryPolicy = template.retryPolicy;
+        this.hedgePolicy = template.hedgePolicy;
+        this.sharedResults = template.sharedResults;
+        this.rateLimit = template.rateLimit;
+        this.maxInFlight = template.maxInFlight;
+        this.metrics = template.metrics;
+        this.requestCompressionThreshold = template.requestCompressionThreshold;
+        this.chunkSize = template.chunkSize;
+        this.submissionBatchSize = template.submissionBatchSize;
+        this.submissionMaxDelay = template.submissionMaxDelay;
+        this.submissionMaxDelayUnit = template.submissionMaxDelayUnit;
+        this.submissionParallelism = template.submissionParallelism;
+        this.cacheTtl = template.cacheTtl;
+        this.cacheStaleWhileRevalidate = template.cacheStaleWhileRevalidate;
+        this.cacheUnit = template.cacheUnit;
+        this.cacheBudget = template.cacheBudget;
+        this.snapshotFile = template.snapshotFile;
+        this.journalFile = template.journalFile;
+        this.journalFsyncPolicy = template.journalFsyncPolicy;
+    }
+
+    ElympicsBuilder copy() {
+        return new ElympicsBuilder(this);
+    }
+
+    /**
+     * Creates a copy of this builder for another key. A configured journal or snapshot file is suffixed with a digest
+     * of the key, so that keys never replay each other's submissions or restore each other's leaderboards.
+     */
+    ElympicsBuilder forKey(String key) {
+        ElympicsBuilder copy = new ElympicsBuilder(this);
+        copy.key = key;
+        if (journalFile != null) {
+            copy.journalFile = new File(journalFile.getPath() + "." + digest(key));
+        }
+        if (snapshotFile != null) {
+            copy.snapshotFile = new File(snapshotFile.getPath() + "." + digest(key));
+        }
+        return copy;
+    }
+
+    ElympicsBuilder withCacheBudget(LeaderboardCacheBudget cacheBudget) {
+        this.cacheBudget = cacheBudget;
+        return this;
+    }
+
+    RequestMetrics getMetrics() {
+        return metrics;
+    }
+
     public ElympicsBuilder withEndpoint(final String endpoint) {
         this.endpoint = endpoint;
         return this;
@@ -29,9 +117,33 @@ public final class ElympicsBuilder {
 
     public ElympicsBuilder withConnector(final HttpConnector connector) {
         this.connector = connector;
+        this.transport = null;
+        return this;
+    }
+
+    /**
+     * Configures the transport that sends requests, instead of opening an {@link HttpURLConnection} per request with
+     * the {@linkplain #withConnector(HttpConnector) connector}. The transport is shared by every {@link Elympics} built
+     * from this builder, including those of an {@link ElympicsRegistry}.
+     * @param transport The transport
+     * @return The builder
+     */
+    public ElympicsBuilder withTransport(final HttpTransport transport) {
+        this.transport = transport;
         return this;
     }
 
+    /**
+     * Configures a {@linkplain #withTransport(HttpTransport) transport} built on {@code java.net.http.HttpClient},
+     * which pools connections and multiplexes concurrent requests over HTTP/2, and needs no reflection for custom
+     * verbs. Requires Java 11 or newer.
+     * @return The builder
+     * @throws UnsupportedOperationException If running on Java 10 or older
+     */
+    public ElympicsBuilder withHttpClient() {
+        return withTransport(HttpTransport.httpClient());
+    }
+
     /**
      * Configures {@linkplain #withConnector(HttpConnector) connector} that uses HTTP library in JRE but use a specific
      * proxy, instead of the system default one.
@@ -42,8 +154,226 @@ public final class ElympicsBuilder {
         return withConnector(new ImpatientHttpConnector(url -> (HttpURLConnection) url.openConnection(proxy)));
     }
 
+    /**
+     * Configures the executor that asynchronous calls such as {@link Elympics#getHighscoresAsync()} run their
+     * blocking requests on. Defaults to {@link ElympicsExecutors#defaultExecutor()}.
+     * @param executor The executor
+     * @return The builder
+     */
+    public ElympicsBuilder withExecutor(final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Configures {@linkplain #withExecutor(Executor) executor} to start a virtual thread per request when running on
+     * Java 21 or newer, so many concurrent asynchronous calls do not each need a platform thread.
+     * @return The builder
+     * @see ElympicsExecutors#newVirtualThreadPerTaskExecutor()
+     */
+    public ElympicsBuilder withVirtualThreads() {
+        return withExecutor(ElympicsExecutors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Configures the policy deciding whether and when failed requests are retried. Defaults to
+     * {@link RetryPolicy#DEFAULT}.
+     * @param retryPolicy The retry policy
+     * @return The builder
+     */
+    public ElympicsBuilder withRetryPolicy(final RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Configures hedging of slow leaderboard reads, which sends a second request when the first one is slow to answer
+     * and takes whichever answers first.
+     * @param hedgePolicy The hedge policy
+     * @return The builder
+     * @see HedgePolicy#fixedDelay(long, TimeUnit, double)
+     * @see HedgePolicy#percentileDelay(InMemoryRequestMetrics, double, long, TimeUnit, double)
+     */
+    public ElympicsBuilder withHedging(final HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    /**
+     * Configures {@link Elympics#getHighscores()} to return the same unmodifiable list to every caller sharing a
+     * request or a cached leaderboard, instead of a copy per caller.
+     * @return The builder
+     * @see Elympics#setSharedResults(boolean)
+     */
+    public ElympicsBuilder withSharedResults() {
+        this.sharedResults = true;
+        return this;
+    }
+
+    /**
+     * Configures an {@link ElympicsRateLimiter} shared with every instance using the same key.
+     * @param requestsPerSecond The sustained number of requests per second
+     * @param maxInFlight The maximum number of requests in flight at the same time
+     * @return The builder
+     * @see ElympicsRateLimiter#forKey(String, double, int)
+     */
+    public ElympicsBuilder withRateLimit(final double requestsPerSecond, final int maxInFlight) {
+        this.rateLimit = requestsPerSecond;
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Configures the metrics that requests are reported to, such as {@link InMemoryRequestMetrics}.
+     * @param metrics The metrics
+     * @return The builder
+     */
+    public ElympicsBuilder withMetrics(final RequestMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Configures request bodies from the given size to be sent compressed with {@code Content-Encoding: gzip}.
+     * Only enable this if the endpoint accepts compressed requests.
+     * @param threshold The size in bytes from which request bodies are compressed
+     * @return The builder
+     */
+    public ElympicsBuilder withRequestCompression(final int threshold) {
+        this.requestCompressionThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Configures request bodies of unknown length to be streamed in chunks of the given size, instead of being
+     * buffered in memory in full before they are sent.
+     * @param chunkSize The chunk size in bytes
+     * @return The builder
+     */
+    public ElympicsBuilder withChunkedStreaming(final int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Configures a {@link HighscoreSubmissionQueue} for {@link Elympics#queueHighscore(ElympicsHighscore)}, which
+     * keeps only the best score per player and sends submissions in batches.
+     * @param batchSize The number of distinct players buffered before the batch is sent
+     * @param maxDelay The longest time a submission is buffered before the batch is sent
+     * @param unit The unit of {@code maxDelay}
+     * @param parallelism The maximum number of submissions sent at the same time
+     * @return The builder
+     */
+    public ElympicsBuilder withSubmissionQueue(final int batchSize, final long maxDelay, final TimeUnit unit,
+                                               final int parallelism) {
+        this.submissionBatchSize = batchSize;
+        this.submissionMaxDelay = maxDelay;
+        this.submissionMaxDelayUnit = unit;
+        this.submissionParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Configures a {@link LeaderboardCache} in front of {@link Elympics#getHighscores()}.
+     * @param ttl How long a fetched leaderboard is returned without revalidating it
+     * @param staleWhileRevalidate How long after the time to live an expired leaderboard is still returned while it
+     *                             is revalidated in the background
+     * @param unit The unit of {@code ttl} and {@code staleWhileRevalidate}
+     * @return The builder
+     */
+    public ElympicsBuilder withCache(final long ttl, final long staleWhileRevalidate, final TimeUnit unit) {
+        this.cacheTtl = ttl;
+        this.cacheStaleWhileRevalidate = staleWhileRevalidate;
+        this.cacheUnit = unit;
+        return this;
+    }
+
+    public ElympicsBuilder withCache(final long ttl, final TimeUnit unit) {
+        return withCache(ttl, 0, unit);
+    }
+
+    /**
+     * Saves each leaderboard fetched by the {@linkplain #withCache(long, long, TimeUnit) cache} to a snapshot file,
+     * along with when it was fetched and its validators, and restores it when building. Restarted clients then serve
+     * the saved leaderboard straight away and refresh it in the background with a conditional request, instead of all
+     * fetching it before their first call returns. Without a cache, one that revalidates on every call is used.
+     * @param file The snapshot file, created if it does not exist
+     * @return The builder
+     */
+    public ElympicsBuilder withSnapshot(final File file) {
+        this.snapshotFile = file;
+        return this;
+    }
+
+    /**
+     * Configures a {@link SubmissionJournal} that records submissions until Elympics acknowledges them, so that those
+     * made while it cannot be reached are replayed later, even after a restart.
+     * @param file The journal file, created if it does not exist
+     * @param fsyncPolicy When changes to the journal are forced to disk
+     * @return The builder
+     */
+    public ElympicsBuilder withJournal(final File file, final SubmissionJournal.FsyncPolicy fsyncPolicy) {
+        this.journalFile = file;
+        this.journalFsyncPolicy = fsyncPolicy;
+        return this;
+    }
+
+    public ElympicsBuilder withJournal(final File file) {
+        return withJournal(file, SubmissionJournal.FsyncPolicy.PERIODIC);
+    }
+
     public Elympics build() {
-        return new Elympics(endpoint, key, connector);
+        Elympics elympics = new Elympics(endpoint, key, connector, executor);
+        if (transport != null) {
+            elympics.setTransport(transport);
+        }
+        if (retryPolicy != null) {
+            elympics.setRetryPolicy(retryPolicy);
+        }
+        elympics.setHedgePolicy(hedgePolicy);
+        elympics.setSharedResults(sharedResults);
+        elympics.setRequestCompressionThreshold(requestCompressionThreshold);
+        elympics.setChunkSize(chunkSize);
+        if (metrics != null) {
+            elympics.setMetrics(metrics);
+        }
+        if (rateLimit > 0) {
+            elympics.setRateLimiter(ElympicsRateLimiter.forKey(key, rateLimit, maxInFlight));
+        }
+        if (submissionMaxDelayUnit != null) {
+            elympics.setSubmissionQueue(submissionBatchSize, submissionMaxDelay, submissionMaxDelayUnit,
+                    submissionParallelism);
+        }
+        if (cacheUnit != null) {
+            elympics.setCache(cacheTtl, cacheStaleWhileRevalidate, cacheUnit, cacheBudget);
+        } else if (snapshotFile != null) {
+            elympics.setCache(0, 0, TimeUnit.MILLISECONDS, cacheBudget);
+        }
+        if (snapshotFile != null) {
+            elympics.setSnapshot(snapshotFile);
+        }
+        if (journalFile != null) {
+            try {
+                elympics.setJournal(journalFile, journalFsyncPolicy);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            elympics.replayJournal();
+        }
+        return elympics;
+    }
+
+    private static String digest(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 }
@@ -0,0 +1,75 @@
+package games.dollarone.elympics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for executors suitable for running blocking Elympics requests off the calling thread.
+ */
+public final class ElympicsExecutors {
+
+    private ElympicsExecutors() {
+
+    }
+
+    private static final class DefaultHolder {
+        static final ExecutorService EXECUTOR = newDaemonCachedThreadPool("elympics-worker");
+    }
+
+    private static final class SchedulerHolder {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                daemonThreadFactory("elympics-scheduler"));
+    }
+
+    /**
+     * Gets the executor used by asynchronous calls when none has been configured. This is a shared cached pool of
+     * daemon threads, so it never prevents the JVM from exiting.
+     *
+     * @return The default executor
+     */
+    public static Executor defaultExecutor() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task when running on Java 21 or newer. On older
+     * runtimes this falls back to a cached pool of daemon platform threads.
+     *
+     * @return The executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return newDaemonCachedThreadPool("elympics-worker");
+        }
+    }
+
+    /**
+     * Gets the timer thread shared by every Elympics instance for delayed work. Tasks scheduled on it must only hand
+     * off blocking work to an executor, never block themselves.
+     */
+    static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    static ExecutorService newDaemonCachedThreadPool(String name) {
+        return Executors.newCachedThreadPool(daemonThreadFactory(name));
+    }
+
+    static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -1,5 +1,8 @@
 package games.dollarone.elympics;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.math.BigInteger;
 
 public class ElympicsHighscore implements Comparable<ElympicsHighscore> {
@@ -7,13 +10,25 @@ public class ElympicsHighscore implements Comparable<ElympicsHighscore> {
     private String name;
     private BigInteger score;
 
+    // scores that fit in a long are kept unboxed, score is then only created on demand
+    @JsonIgnore
+    private long longScore;
+    @JsonIgnore
+    private boolean hasLongScore;
+
     public ElympicsHighscore(String name, BigInteger score) {
         this.name = name;
         this.score = score;
+        if (score != null && score.bitLength() < Long.SIZE) {
+            this.longScore = score.longValue();
+            this.hasLongScore = true;
+        }
     }
 
     public ElympicsHighscore(String name, long score) {
-        this(name, BigInteger.valueOf(score));
+        this.name = name;
+        this.longScore = score;
+        this.hasLongScore = true;
     }
 
     protected ElympicsHighscore() {
@@ -24,20 +39,43 @@ public class ElympicsHighscore implements Comparable<ElympicsHighscore> {
         return name;
     }
 
+    // serialized through the getter, as the field is null until a long score is first asked for
+    @JsonProperty("score")
     public BigInteger getScore() {
+        BigInteger score = this.score;
+        if (score == null && hasLongScore) {
+            // racy but benign, BigInteger is immutable
+            score = BigInteger.valueOf(longScore);
+            this.score = score;
+        }
         return score;
     }
 
+    /**
+     * Whether {@link #getLongScore()} can stand in for {@link #getScore()}. Never true for subclasses, which may
+     * override {@link #getScore()}.
+     */
+    boolean hasLongScore() {
+        return hasLongScore && getClass() == ElympicsHighscore.class;
+    }
+
+    long getLongScore() {
+        return longScore;
+    }
+
     @Override
     public int compareTo(ElympicsHighscore other) {
+        if (hasLongScore() && other.hasLongScore()) {
+            return Long.compare(other.longScore, longScore);
+        }
         if (other.getScore() == null) {
             if (getScore() == null) {
                 return 0;
             } else {
-                return BigInteger.valueOf(0).compareTo(getScore());
+                return BigInteger.ZERO.compareTo(getScore());
             }
         } else if (getScore() == null) {
-            return other.getScore().compareTo(BigInteger.valueOf(0));
+            return other.getScore().compareTo(BigInteger.ZERO);
         } else {
             return other.getScore().compareTo(getScore());
         }
@@ -0,0 +1,135 @@
+package games.dollarone.elympics;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.util.ObjectBuffer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Reads {@link ElympicsHighscore}s straight from the parser's tokens, without the reflection of a bean deserializer.
+ *
+ * Scores are read as a {@code long} whenever they fit, a {@link BigInteger} is only created for scores that overflow
+ * one. As with the bean deserializer, unknown properties are skipped and a missing or {@code null} name or score is
+ * left {@code null}. Only {@link ElympicsHighscore} itself is read this way, subclasses are still bound reflectively.
+ */
+final class ElympicsHighscoreDeserializer extends JsonDeserializer<ElympicsHighscore> {
+
+    static final ElympicsHighscoreDeserializer INSTANCE = new ElympicsHighscoreDeserializer();
+
+    private ElympicsHighscoreDeserializer() {
+
+    }
+
+    @Override
+    public ElympicsHighscore deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            throw unexpected(parser, ElympicsHighscore.class, token);
+        }
+        String name = null;
+        long longScore = 0;
+        BigInteger score = null;
+        boolean hasLongScore = false;
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+            if ("name".equals(field)) {
+                name = readName(parser, context, token);
+            } else if ("score".equals(field)) {
+                hasLongScore = false;
+                score = null;
+                if (token == JsonToken.VALUE_NUMBER_INT
+                        && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    longScore = parser.getLongValue();
+                    hasLongScore = true;
+                } else {
+                    score = readScore(parser, context, token);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) throw unexpected(parser, ElympicsHighscore.class, token);
+        return hasLongScore ? new ElympicsHighscore(name, longScore) : new ElympicsHighscore(name, score);
+    }
+
+    private static String readName(JsonParser parser, DeserializationContext context, JsonToken token)
+            throws IOException {
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (token.isScalarValue()) return parser.getText();
+        throw unexpected(parser, String.class, token);
+    }
+
+    private static BigInteger readScore(JsonParser parser, DeserializationContext context, JsonToken token)
+            throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getBigIntegerValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue().toBigInteger();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) return null;
+                try {
+                    return new BigInteger(text);
+                } catch (NumberFormatException e) {
+                    throw JsonMappingException.from(parser, "Not a valid score: " + text);
+                }
+            default:
+                throw unexpected(parser, BigInteger.class, token);
+        }
+    }
+
+    private static JsonMappingException unexpected(JsonParser parser, Class<?> type, JsonToken token) {
+        return JsonMappingException.from(parser, "Can not deserialize instance of " + type.getName() + " out of "
+                + (token != null ? token + " token" : "end of input"));
+    }
+
+    /**
+     * Reads a JSON array of high scores into an array in chunks, as Jackson's own array deserializer does, so large
+     * leaderboards are not repeatedly copied while growing.
+     */
+    static final class Array extends JsonDeserializer<ElympicsHighscore[]> {
+
+        static final Array INSTANCE = new Array();
+
+        private Array() {
+
+        }
+
+        @Override
+        public ElympicsHighscore[] deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw unexpected(parser, ElympicsHighscore[].class, parser.getCurrentToken());
+            }
+            ObjectBuffer buffer = context.leaseObjectBuffer();
+            Object[] chunk = buffer.resetAndStart();
+            int index = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) throw unexpected(parser, ElympicsHighscore[].class, null);
+                ElympicsHighscore highscore = token == JsonToken.VALUE_NULL
+                        ? null
+                        : ElympicsHighscoreDeserializer.INSTANCE.deserialize(parser, context);
+                if (index == chunk.length) {
+                    chunk = buffer.appendCompletedChunk(chunk);
+                    index = 0;
+                }
+                chunk[index++] = highscore;
+            }
+            ElympicsHighscore[] highscores = buffer.completeAndClearBuffer(chunk, index, ElympicsHighscore.class);
+            context.returnObjectBuffer(buffer);
+            return highscores;
+        }
+    }
+
+}
@@ -0,0 +1,283 @@
+package games.dollarone.elympics;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, immutable leaderboard sorted from best to worst score, as ordered by
+ * {@link ElympicsHighscore#compareTo(ElympicsHighscore)}.
+ *
+ * Entries are stored as columns rather than as {@link ElympicsHighscore} objects: scores in a {@code long[]}, with the
+ * rare scores that do not fit in a {@code long} kept in a side table, and names deduplicated so each distinct name is
+ * only stored once. Reading and comparing entries by index does not allocate. Missing scores are stored as zero.
+ */
+public final class ElympicsLeaderboard implements Iterable<ElympicsHighscore> {
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final String[] names;
+    private final long[] scores;
+    private final int[] overflowIndices;
+    private final BigInteger[] overflowScores;
+
+    /**
+     * Receives the entries of a leaderboard without allocating an object per entry.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Receives an entry.
+         *
+         * @param index The position of the entry, 0 being the best score
+         * @param name The name of the player
+         * @param score The score, clamped to the {@code long} range if it {@linkplain #fitsInLong(int) does not fit}
+         */
+        void accept(int index, String name, long score);
+
+    }
+
+    private ElympicsLeaderboard(String[] names, long[] scores, int[] overflowIndices, BigInteger[] overflowScores) {
+        this.names = names;
+        this.scores = scores;
+        this.overflowIndices = overflowIndices;
+        this.overflowScores = overflowScores;
+    }
+
+    /**
+     * Creates a leaderboard from high scores in any order.
+     *
+     * @param highscores The high scores
+     * @return The leaderboard
+     */
+    public static ElympicsLeaderboard of(Iterable<? extends ElympicsHighscore> highscores) {
+        return of(highscores.iterator());
+    }
+
+    /**
+     * Creates a leaderboard from high scores in any order, consuming them one at a time, so they never need to be held
+     * in memory as objects at the same time.
+     *
+     * @param highscores The high scores
+     * @return The leaderboard
+     */
+    public static ElympicsLeaderboard of(Iterator<? extends ElympicsHighscore> highscores) {
+        Map<String, String> interned = new HashMap<>();
+        // exact scores by entry, only allocated once a score does not fit in a long
+        BigInteger[] overflow = null;
+        int overflowCount = 0;
+        String[] names = new String[16];
+        long[] scores = new long[16];
+        int size = 0;
+        while (highscores.hasNext()) {
+            ElympicsHighscore highscore = highscores.next();
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+                if (overflow != null) overflow = Arrays.copyOf(overflow, size * 2);
+            }
+            String name = highscore.getName();
+            if (name != null) {
+                String existing = interned.putIfAbsent(name, name);
+                if (existing != null) name = existing;
+            }
+            names[size] = name;
+            if (highscore.hasLongScore()) {
+                scores[size++] = highscore.getLongScore();
+                continue;
+            }
+            BigInteger score = highscore.getScore();
+            if (score == null) {
+                scores[size] = 0;
+            } else if (score.bitLength() < Long.SIZE) {
+                scores[size] = score.longValue();
+            } else {
+                scores[size] = score.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+                if (overflow == null) overflow = new BigInteger[names.length];
+                overflow[size] = score;
+                overflowCount++;
+            }
+            size++;
+        }
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sort(order, new int[size], 0, size, scores, overflow);
+
+        String[] sortedNames = new String[size];
+        long[] sortedScores = new long[size];
+        int[] overflowIndices = new int[overflowCount];
+        BigInteger[] overflowScores = new BigInteger[overflowCount];
+        overflowCount = 0;
+        for (int i = 0; i < size; i++) {
+            sortedNames[i] = names[order[i]];
+            sortedScores[i] = scores[order[i]];
+            if (overflow != null && overflow[order[i]] != null) {
+                overflowIndices[overflowCount] = i;
+                overflowScores[overflowCount] = overflow[order[i]];
+                overflowCount++;
+            }
+        }
+        return new ElympicsLeaderboard(sortedNames, sortedScores, overflowIndices, overflowScores);
+    }
+
+    /**
+     * Stable merge sort of entry indices from best to worst score.
+     */
+    private static void sort(int[] order, int[] buffer, int from, int to, long[] scores, BigInteger[] overflow) {
+        if (to - from < 2) return;
+        int middle = (from + to) >>> 1;
+        sort(order, buffer, from, middle, scores, overflow);
+        sort(order, buffer, middle, to, scores, overflow);
+        if (compare(order[middle - 1], order[middle], scores, overflow) <= 0) return;
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(buffer[left], buffer[right], scores, overflow) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static int compare(int first, int second, long[] scores, BigInteger[] overflow) {
+        int result = Long.compare(scores[second], scores[first]);
+        if (result != 0 || overflow == null || !isClamped(scores[first])) return result;
+        return exact(overflow[second], scores[second]).compareTo(exact(overflow[first], scores[first]));
+    }
+
+    private static boolean isClamped(long score) {
+        return score == Long.MAX_VALUE || score == Long.MIN_VALUE;
+    }
+
+    private static BigInteger exact(BigInteger overflow, long score) {
+        if (overflow != null) return overflow;
+        return score == Long.MAX_VALUE ? LONG_MAX : LONG_MIN;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return scores.length;
+    }
+
+    /**
+     * Gets the name of the player at the given position.
+     *
+     * @param index The position, 0 being the best score
+     * @return The name
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Checks whether the score at the given position fits in a {@code long}.
+     *
+     * @param index The position, 0 being the best score
+     * @return {@code true} if {@link #getLongScore(int)} returns the exact score
+     */
+    public boolean fitsInLong(int index) {
+        return overflowIndices.length == 0 || Arrays.binarySearch(overflowIndices, index) < 0;
+    }
+
+    /**
+     * Gets the score at the given position as a {@code long}, without allocating.
+     *
+     * @param index The position, 0 being the best score
+     * @return The score
+     * @throws ArithmeticException If the score does not {@linkplain #fitsInLong(int) fit} in a {@code long}
+     */
+    public long getLongScore(int index) {
+        if (!fitsInLong(index)) throw new ArithmeticException("Score at " + index + " does not fit in a long");
+        return scores[index];
+    }
+
+    /**
+     * Gets the score at the given position.
+     *
+     * @param index The position, 0 being the best score
+     * @return The score
+     */
+    public BigInteger getScore(int index) {
+        if (overflowIndices.length > 0) {
+            int overflowIndex = Arrays.binarySearch(overflowIndices, index);
+            if (overflowIndex >= 0) return overflowScores[overflowIndex];
+        }
+        return BigInteger.valueOf(scores[index]);
+    }
+
+    /**
+     * Compares the entries at two positions with the same semantics as
+     * {@link ElympicsHighscore#compareTo(ElympicsHighscore)}, without allocating.
+     *
+     * @param first The position of the first entry
+     * @param second The position of the second entry
+     * @return A negative number if the first entry has the better score, a positive number if the second does,
+     * otherwise 0
+     */
+    public int compare(int first, int second) {
+        int result = Long.compare(scores[second], scores[first]);
+        if (result != 0 || overflowIndices.length == 0 || !isClamped(scores[first])) return result;
+        return getScore(second).compareTo(getScore(first));
+    }
+
+    /**
+     * Passes every entry, from best to worst score, to the given consumer without allocating.
+     *
+     * @param consumer The consumer
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < scores.length; i++) {
+            consumer.accept(i, names[i], scores[i]);
+        }
+    }
+
+    /**
+     * Gets the entry at the given position as a new {@link ElympicsHighscore}.
+     *
+     * @param index The position, 0 being the best score
+     * @return The entry
+     */
+    public ElympicsHighscore get(int index) {
+        if (fitsInLong(index)) return new ElympicsHighscore(names[index], scores[index]);
+        return new ElympicsHighscore(names[index], getScore(index));
+    }
+
+    /**
+     * Iterates over the entries from best to worst score. Each entry is created as it is returned; use
+     * {@link #forEach(EntryConsumer)} to avoid this.
+     *
+     * @return The iterator
+     */
+    @Override
+    public Iterator<ElympicsHighscore> iterator() {
+        return new Iterator<ElympicsHighscore>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < scores.length;
+            }
+
+            @Override
+            public ElympicsHighscore next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return get(index++);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,259 @@
+package games.dollarone.elympics;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Index over a leaderboard answering rank queries in logarithmic time.
+ *
+ * Each player has a single entry holding their best score, as ordered by
+ * {@link ElympicsHighscore#compareTo(ElympicsHighscore)}. Players with equal scores are ranked in the order they were
+ * added. Ranks start at 1 for the best score. The index can be updated as new scores are submitted, and is safe to
+ * use from multiple threads.
+ */
+public final class ElympicsRankIndex {
+
+    private final Map<String, Node> nodesByName = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+    private long sequence;
+
+    /**
+     * Node of a treap ordered by score, with each node also keeping the size of its subtree.
+     */
+    private static final class Node {
+        final ElympicsHighscore highscore;
+        final long sequence;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        private Node(ElympicsHighscore highscore, long sequence, int priority) {
+            this.highscore = highscore;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+    }
+
+    public ElympicsRankIndex() {
+
+    }
+
+    /**
+     * Creates an index of the given high scores.
+     *
+     * @param highscores The high scores
+     * @return The index
+     */
+    public static ElympicsRankIndex of(Iterable<? extends ElympicsHighscore> highscores) {
+        ElympicsRankIndex index = new ElympicsRankIndex();
+        for (ElympicsHighscore highscore : highscores) {
+            index.record(highscore);
+        }
+        return index;
+    }
+
+    /**
+     * Records a high score, replacing the player's current entry if the new score is better.
+     *
+     * @param highscore The high score
+     * @return {@code true} if the index changed
+     */
+    public synchronized boolean record(ElympicsHighscore highscore) {
+        Node existing = nodesByName.get(highscore.getName());
+        if (existing != null) {
+            if (highscore.compareTo(existing.highscore) >= 0) return false;
+            root = delete(root, existing);
+        }
+        Node node = new Node(highscore, sequence++, random.nextInt());
+        nodesByName.put(highscore.getName(), node);
+        root = insert(root, node);
+        return true;
+    }
+
+    /**
+     * Gets the number of players in the index.
+     *
+     * @return The number of players
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Gets the rank of a player.
+     *
+     * @param name The name of the player
+     * @return The rank, or {@code -1} if the player is not in the index
+     */
+    public synchronized int rankOf(String name) {
+        Node node = nodesByName.get(name);
+        return node == null ? -1 : rank(node);
+    }
+
+    /**
+     * Gets the entry at the given rank.
+     *
+     * @param rank The rank, from 1 to {@link #size()}
+     * @return The entry
+     * @throws IndexOutOfBoundsException If there is no entry at the given rank
+     */
+    public synchronized ElympicsHighscore atRank(int rank) {
+        return select(rank).highscore;
+    }
+
+    /**
+     * Gets the score at the given rank.
+     *
+     * @param rank The rank, from 1 to {@link #size()}
+     * @return The score
+     * @throws IndexOutOfBoundsException If there is no entry at the given rank
+     */
+    public BigInteger scoreAtRank(int rank) {
+        return atRank(rank).getScore();
+    }
+
+    /**
+     * Gets the best entries.
+     *
+     * @param k The maximum number of entries
+     * @return Up to {@code k} entries, from best to worst score
+     */
+    public synchronized List<ElympicsHighscore> top(int k) {
+        List<ElympicsHighscore> result = new ArrayList<>(Math.max(0, Math.min(k, size(root))));
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        while (result.size() < k && (node != null || !path.isEmpty())) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+            node = path.pop();
+            result.add(node.highscore);
+            node = node.right;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the entries ranked around a player.
+     *
+     * @param name The name of the player
+     * @param radius The number of entries to include on either side of the player
+     * @return The entries from {@code radius} ranks above to {@code radius} ranks below the player, from best to worst
+     * score, or an empty list if the player is not in the index
+     */
+    public synchronized List<ElympicsHighscore> around(String name, int radius) {
+        Node node = nodesByName.get(name);
+        if (node == null) return new ArrayList<>();
+        int rank = rank(node);
+        int from = Math.max(1, rank - radius);
+        int to = Math.min(size(root), rank + radius);
+        List<ElympicsHighscore> result = new ArrayList<>(to - from + 1);
+        for (int i = from; i <= to; i++) {
+            result.add(select(i).highscore);
+        }
+        return result;
+    }
+
+    private int rank(Node target) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int comparison = compare(target, node);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left) + 1;
+            }
+        }
+        throw new IllegalStateException("Indexed entry is missing from the tree");
+    }
+
+    private Node select(int rank) {
+        if (rank < 1 || rank > size(root)) {
+            throw new IndexOutOfBoundsException("Rank: " + rank + ", size: " + size(root));
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (rank <= leftSize) {
+                node = node.left;
+            } else if (rank == leftSize + 1) {
+                return node;
+            } else {
+                rank -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static int compare(Node first, Node second) {
+        int comparison = first.highscore.compareTo(second.highscore);
+        return comparison != 0 ? comparison : Long.compare(first.sequence, second.sequence);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) return inserted;
+        if (compare(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                Node pivot = node.left;
+                node.left = pivot.right;
+                pivot.right = update(node);
+                return update(pivot);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                Node pivot = node.right;
+                node.right = pivot.left;
+                pivot.left = update(node);
+                return update(pivot);
+            }
+        }
+        return update(node);
+    }
+
+    private static Node delete(Node node, Node deleted) {
+        if (node == deleted) return merge(node.left, node.right);
+        if (compare(deleted, node) < 0) {
+            node.left = delete(node.left, deleted);
+        } else {
+            node.right = delete(node.right, deleted);
+        }
+        return update(node);
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        } else {
+            right.left = merge(left, right.left);
+            return update(right);
+        }
+    }
+
+}
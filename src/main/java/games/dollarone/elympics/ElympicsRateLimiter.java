@@ -0,0 +1,214 @@
+package games.dollarone.elympics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits how fast requests are made with an API key, so that clients stay under the server's rate limit instead of
+ * being rate limited and retrying.
+ *
+ * Requests are limited both by rate, using a token bucket that allows bursts of up to one second's worth of requests,
+ * and by concurrency, allowing a maximum number of requests in flight. Limiters are shared by every {@link Elympics}
+ * instance in the JVM using the same key.
+ */
+public final class ElympicsRateLimiter {
+
+    private static final ConcurrentMap<String, ElympicsRateLimiter> SHARED = new ConcurrentHashMap<>();
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private final int maxInFlight;
+
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int available;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * Held while a request is in flight. Closing it allows the next request to start.
+     */
+    public static final class Permit implements AutoCloseable {
+        static final Permit NONE = new Permit(null);
+
+        private final ElympicsRateLimiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ElympicsRateLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void close() {
+            if (limiter != null && released.compareAndSet(false, true)) limiter.release();
+        }
+    }
+
+    /**
+     * @param permitsPerSecond The sustained number of requests per second
+     * @param maxInFlight The maximum number of requests in flight at the same time
+     */
+    public ElympicsRateLimiter(double permitsPerSecond, int maxInFlight) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("Permits per second must be positive");
+        if (maxInFlight < 1) throw new IllegalArgumentException("Max in flight must be at least 1");
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.maxInFlight = maxInFlight;
+        this.available = maxInFlight;
+        this.tokens = capacity;
+    }
+
+    /**
+     * Gets the limiter shared by every instance using the given key, creating it with the given limits if there is
+     * none yet. Once created, the limits of a shared limiter are not changed by later calls.
+     *
+     * @param key The API key
+     * @param permitsPerSecond The sustained number of requests per second
+     * @param maxInFlight The maximum number of requests in flight at the same time
+     * @return The limiter
+     */
+    public static ElympicsRateLimiter forKey(String key, double permitsPerSecond, int maxInFlight) {
+        if (key == null) return new ElympicsRateLimiter(permitsPerSecond, maxInFlight);
+        return SHARED.computeIfAbsent(key, k -> new ElympicsRateLimiter(permitsPerSecond, maxInFlight));
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Waits until a request may be made.
+     *
+     * @return The permit, which must be closed once the request is complete
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public Permit acquire() throws InterruptedException {
+        CompletableFuture<Void> slot = acquireSlot();
+        try {
+            slot.get();
+        } catch (InterruptedException e) {
+            if (!slot.cancel(false)) release();
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        Permit permit = new Permit(this);
+        long wait = reserveToken();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                permit.close();
+                throw e;
+            }
+        }
+        return permit;
+    }
+
+    /**
+     * Acquires a permit only if a request may be made straight away.
+     *
+     * @return The permit, which must be closed once the request is complete, or {@code null} if a request may not be
+     * made now
+     */
+    public Permit tryAcquire() {
+        synchronized (this) {
+            refill();
+            if (available == 0 || tokens < 1) return null;
+            available--;
+            tokens--;
+        }
+        return new Permit(this);
+    }
+
+    /**
+     * Acquires a permit without blocking the calling thread.
+     *
+     * @return A future completed with the permit once a request may be made. The permit must be closed once the
+     * request is complete. Cancelling the future before it completes gives up the place in the queue.
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        CompletableFuture<Void> slot = acquireSlot();
+        CompletableFuture<Permit> result = new CompletableFuture<>();
+        slot.thenRun(() -> {
+            Permit permit = new Permit(this);
+            if (result.isDone()) { // cancelled while the slot was being handed over
+                permit.close();
+                return;
+            }
+            long wait = reserveToken();
+            if (wait <= 0) {
+                grant(result, permit);
+            } else {
+                ElympicsExecutors.scheduler().schedule(() -> grant(result, permit), wait, TimeUnit.NANOSECONDS);
+            }
+        });
+        result.whenComplete((permit, exception) -> {
+            if (result.isCancelled()) abandon(slot);
+        });
+        return result;
+    }
+
+    private static void grant(CompletableFuture<Permit> result, Permit permit) {
+        // gives the slot back if the caller cancelled in the meantime
+        if (!result.complete(permit)) permit.close();
+    }
+
+    /**
+     * Gives up a place in the queue. A slot already handed over is given back by whoever receives it.
+     */
+    private void abandon(CompletableFuture<Void> slot) {
+        synchronized (this) {
+            waiters.remove(slot);
+        }
+        slot.cancel(false);
+    }
+
+    private synchronized CompletableFuture<Void> acquireSlot() {
+        if (available > 0 && waiters.isEmpty()) {
+            available--;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    /**
+     * Takes a token, going into debt if there is none so that callers are spaced out at the sustained rate.
+     *
+     * @return How long to wait in nanoseconds before the token may be used
+     */
+    private synchronized long reserveToken() {
+        refill();
+        tokens--;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerNano);
+        refilledAt = now;
+    }
+
+    private void release() {
+        while (true) {
+            CompletableFuture<Void> waiter;
+            synchronized (this) {
+                waiter = waiters.poll();
+                if (waiter == null) {
+                    available++;
+                    return;
+                }
+            }
+            // hand the slot over to the next waiter, unless it gave up waiting
+            if (waiter.complete(null)) return;
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package games.dollarone.elympics;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out one {@link Elympics} per game key, all configured from the same template and sharing its connector,
+ * executor and background threads, so that serving many games from one JVM does not multiply resources.
+ *
+ * Each key gets its own {@link InMemoryRequestMetrics}, reported to alongside any metrics configured on the template.
+ * If the template configures a {@linkplain ElympicsBuilder#withCache(long, long, java.util.concurrent.TimeUnit) cache}, the caches of all
+ * keys share one memory budget, evicting the least recently read leaderboards first.
+ */
+public final class ElympicsRegistry implements Closeable {
+
+    private final ElympicsBuilder template;
+    private final LeaderboardCacheBudget cacheBudget;
+    private final ConcurrentMap<String, Elympics> instances = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, InMemoryRequestMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry with no bound on the memory taken by cached leaderboards.
+     *
+     * @param template The configuration of every instance, whose key is ignored
+     */
+    public ElympicsRegistry(ElympicsBuilder template) {
+        this(template, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param template The configuration of every instance, whose key is ignored
+     * @param cacheBudgetBytes The approximate number of bytes the cached leaderboards of all keys may take together
+     */
+    public ElympicsRegistry(ElympicsBuilder template, long cacheBudgetBytes) {
+        this.cacheBudget = new LeaderboardCacheBudget(cacheBudgetBytes);
+        this.template = template.copy().withCacheBudget(cacheBudget);
+    }
+
+    /**
+     * Gets the instance for a key, building it the first time.
+     *
+     * @param key The game key
+     * @return The instance
+     */
+    public Elympics get(String key) {
+        return instances.computeIfAbsent(key, this::create);
+    }
+
+    private Elympics create(String key) {
+        InMemoryRequestMetrics keyMetrics = metrics.computeIfAbsent(key, k -> new InMemoryRequestMetrics());
+        RequestMetrics templateMetrics = template.getMetrics();
+        return template.forKey(key)
+                .withMetrics(templateMetrics != null ? RequestMetrics.combine(templateMetrics, keyMetrics) : keyMetrics)
+                .build();
+    }
+
+    /**
+     * Gets the metrics of the requests made for a key.
+     *
+     * @param key The game key
+     * @return The metrics, or {@code null} if no instance was built for the key
+     */
+    public InMemoryRequestMetrics getMetrics(String key) {
+        return metrics.get(key);
+    }
+
+    /**
+     * Gets the keys that have an instance.
+     *
+     * @return The keys
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(instances.keySet());
+    }
+
+    /**
+     * Gets the approximate number of bytes taken by the cached leaderboards of all keys.
+     *
+     * @return The number of bytes
+     */
+    public long getCacheUsedBytes() {
+        return cacheBudget.getUsedBytes();
+    }
+
+    /**
+     * Closes and forgets the instance for a key, releasing its share of the cache budget.
+     *
+     * @param key The game key
+     */
+    public void remove(String key) {
+        Elympics elympics = instances.remove(key);
+        if (elympics != null) release(elympics);
+        metrics.remove(key);
+    }
+
+    /**
+     * Closes every instance.
+     */
+    @Override
+    public void close() {
+        for (String key : instances.keySet()) {
+            remove(key);
+        }
+    }
+
+    private static void release(Elympics elympics) {
+        if (elympics.getCache() != null) elympics.getCache().invalidate();
+        elympics.close();
+    }
+
+}
@@ -0,0 +1,139 @@
+package games.dollarone.elympics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes parameters as {@code application/x-www-form-urlencoded} UTF-8 bytes into a buffer reused by each thread,
+ * for request bodies and query strings.
+ *
+ * Characters are percent-encoded as they are written, without creating intermediate strings or byte arrays.
+ */
+final class FormEncoder {
+
+    private static final ThreadLocal<FormEncoder> ENCODERS = ThreadLocal.withInitial(FormEncoder::new);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final boolean[] UNRESERVED = new boolean[128];
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['*'] = true;
+    }
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    private FormEncoder() {
+
+    }
+
+    /**
+     * Gets the calling thread's encoder, emptied. The encoder must not be used after the thread gets it again.
+     */
+    static FormEncoder get() {
+        FormEncoder encoder = ENCODERS.get();
+        if (encoder.buffer.length > MAX_RETAINED_CAPACITY) encoder.buffer = new byte[INITIAL_CAPACITY];
+        encoder.size = 0;
+        return encoder;
+    }
+
+    /**
+     * Appends a parameter, separated from the previous one by {@code &}.
+     */
+    FormEncoder add(String key, Object value) {
+        if (size > 0) put('&');
+        encode(key);
+        put('=');
+        encode(value.toString());
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    /**
+     * Compresses the encoded parameters for a {@code Content-Encoding: gzip} request body.
+     */
+    byte[] gzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(buffer, 0, size);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets the encoded parameters, which are plain ASCII, for use in a query string.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.US_ASCII);
+    }
+
+    private void encode(String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    put(c);
+                } else if (c == ' ') {
+                    put('+');
+                } else {
+                    escape(c);
+                }
+            } else if (c < 0x800) {
+                escape(0xC0 | (c >> 6));
+                escape(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                escape(0xF0 | (codePoint >> 18));
+                escape(0x80 | ((codePoint >> 12) & 0x3F));
+                escape(0x80 | ((codePoint >> 6) & 0x3F));
+                escape(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                escape('?'); // unpaired surrogate, replaced like String.getBytes does
+            } else {
+                escape(0xE0 | (c >> 12));
+                escape(0x80 | ((c >> 6) & 0x3F));
+                escape(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void escape(int b) {
+        ensureCapacity(3);
+        buffer[size++] = '%';
+        buffer[size++] = HEX[(b >> 4) & 0xF];
+        buffer[size++] = HEX[b & 0xF];
+    }
+
+    private void put(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, size + extra)];
+            System.arraycopy(buffer, 0, grown, 0, size);
+            buffer = grown;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Decides when a slow read is hedged: sent a second time while the first request is still outstanding, taking
+ * whichever answers first and cancelling the other. This cuts the tail latency caused by occasional slow responses,
+ * at the cost of some extra requests.
+ *
+ * The hedge is sent once the first request has not answered within a delay, either fixed or tracking a percentile of
+ * the latencies recorded by {@link InMemoryRequestMetrics}. The extra load is capped: each request earns a fraction of
+ * a hedge, and a hedge is only sent when a whole one has been earned, so at most that fraction of requests is hedged
+ * even when the server is slow across the board.
+ *
+ * A policy keeps the hedging budget and should not be shared between unrelated instances.
+ */
+public final class HedgePolicy {
+
+    private static final long MIN_SAMPLES = 100;
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_BANKED_HEDGES = 10;
+
+    private final InMemoryRequestMetrics metrics;
+    private final double percentile;
+    private final long fixedDelayNanos;
+    private final double maxExtraLoad;
+
+    private double credit;
+    private long delayNanos;
+    private long delayComputedAt;
+
+    private HedgePolicy(InMemoryRequestMetrics metrics, double percentile, long delayNanos, double maxExtraLoad) {
+        if (maxExtraLoad < 0 || maxExtraLoad > 1) throw new IllegalArgumentException("Max extra load must be in [0, 1]");
+        this.metrics = metrics;
+        this.percentile = percentile;
+        this.fixedDelayNanos = delayNanos;
+        this.maxExtraLoad = maxExtraLoad;
+        this.delayNanos = delayNanos;
+    }
+
+    /**
+     * Creates a policy hedging reads that have not answered within a fixed delay.
+     *
+     * @param delay The delay after which a read is hedged
+     * @param unit The unit of {@code delay}
+     * @param maxExtraLoad The largest fraction of reads that may be hedged, such as {@code 0.05}
+     * @return The policy
+     */
+    public static HedgePolicy fixedDelay(long delay, TimeUnit unit, double maxExtraLoad) {
+        return new HedgePolicy(null, Double.NaN, unit.toNanos(delay), maxExtraLoad);
+    }
+
+    /**
+     * Creates a policy hedging reads that take longer than a percentile of the total latencies recorded for the
+     * endpoint. Until enough latencies have been recorded, reads are hedged after the initial delay.
+     *
+     * @param metrics The metrics that the requests of the instance are reported to
+     * @param percentile The percentile, such as {@code 95}
+     * @param initialDelay The delay used until enough latencies have been recorded
+     * @param unit The unit of {@code initialDelay}
+     * @param maxExtraLoad The largest fraction of reads that may be hedged, such as {@code 0.05}
+     * @return The policy
+     */
+    public static HedgePolicy percentileDelay(InMemoryRequestMetrics metrics, double percentile, long initialDelay,
+                                              TimeUnit unit, double maxExtraLoad) {
+        return new HedgePolicy(metrics, percentile, unit.toNanos(initialDelay), maxExtraLoad);
+    }
+
+    /**
+     * Gets the current delay after which a read of the endpoint is hedged.
+     *
+     * @param endpoint The endpoint
+     * @return The delay in nanoseconds
+     */
+    public synchronized long getDelayNanos(String endpoint) {
+        if (metrics == null) return fixedDelayNanos;
+        long now = System.nanoTime();
+        if (delayComputedAt == 0 || now - delayComputedAt >= DELAY_REFRESH_NANOS) {
+            LatencyHistogram.Snapshot latencies = metrics.getTotalLatency(endpoint).snapshot();
+            delayNanos = latencies.getCount() >= MIN_SAMPLES ? latencies.getPercentile(percentile) : fixedDelayNanos;
+            delayComputedAt = now;
+        }
+        return delayNanos;
+    }
+
+    private synchronized void earnCredit() {
+        credit = Math.min(MAX_BANKED_HEDGES, credit + maxExtraLoad);
+    }
+
+    private synchronized boolean trySpendCredit() {
+        if (credit < 1) return false;
+        credit--;
+        return true;
+    }
+
+    /**
+     * State of one hedged call, guarded by its own monitor.
+     */
+    private static final class Call<T> {
+        boolean done;
+        Requester hedge;
+        boolean hedgeFinished;
+        boolean hedgeWon;
+        T hedgeResult;
+        Throwable hedgeFailure;
+    }
+
+    /**
+     * Makes an idempotent request, hedging it if it is slow to answer.
+     *
+     * @param root The instance making the request
+     * @param endpoint The endpoint, used to look up latencies and report hedges
+     * @param requests Creates a request ready to be made
+     * @param call Makes the given request and reads its result
+     */
+    <T> T execute(Elympics root, String endpoint, Supplier<Requester> requests, IOFunction<Requester, T> call)
+            throws IOException {
+        earnCredit();
+        Requester primary = requests.get();
+        Call<T> state = new Call<>();
+        ScheduledFuture<?> timer = ElympicsExecutors.scheduler().schedule(() -> {
+            Requester hedge;
+            synchronized (state) {
+                if (state.done || !trySpendCredit()) return;
+                hedge = requests.get();
+                state.hedge = hedge;
+            }
+            root.getMetrics().recordHedge(endpoint);
+            root.getExecutor().execute(() -> runHedge(state, primary, hedge, call));
+        }, getDelayNanos(endpoint), TimeUnit.NANOSECONDS);
+
+        T result;
+        try {
+            result = call.apply(primary);
+        } catch (IOException | RuntimeException e) {
+            timer.cancel(false);
+            return awaitHedge(state, e);
+        }
+        timer.cancel(false);
+        Requester loser;
+        synchronized (state) {
+            state.done = true;
+            loser = state.hedgeWon ? null : state.hedge;
+        }
+        if (loser != null) loser.cancel();
+        return result;
+    }
+
+    private static <T> void runHedge(Call<T> state, Requester primary, Requester hedge,
+                                     IOFunction<Requester, T> call) {
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = call.apply(hedge);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        boolean won;
+        synchronized (state) {
+            won = failure == null && !state.done;
+            state.hedgeFinished = true;
+            state.hedgeResult = result;
+            state.hedgeFailure = failure;
+            if (won) {
+                state.done = true;
+                state.hedgeWon = true;
+            }
+            state.notifyAll();
+        }
+        if (won) primary.cancel();
+    }
+
+    /**
+     * Called once the first request failed, which includes being cancelled because the hedge answered first.
+     */
+    private static <T> T awaitHedge(Call<T> state, Exception primaryFailure) throws IOException {
+        synchronized (state) {
+            if (state.hedge == null) {
+                state.done = true;
+                throw rethrow(primaryFailure);
+            }
+            try {
+                while (!state.hedgeFinished) {
+                    state.wait();
+                }
+            } catch (InterruptedException e) {
+                state.hedge.cancel();
+                Thread.currentThread().interrupt();
+                throw (IOException) new InterruptedIOException("Interrupted while waiting for hedged request")
+                        .initCause(primaryFailure);
+            }
+            if (state.hedgeFailure == null) return state.hedgeResult;
+            primaryFailure.addSuppressed(state.hedgeFailure);
+            throw rethrow(primaryFailure);
+        }
+    }
+
+    private static IOException rethrow(Exception e) {
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        return (IOException) e;
+    }
+
+}
@@ -0,0 +1,160 @@
+package games.dollarone.elympics;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers high score submissions and sends them in batches.
+ *
+ * Submissions for the same player are collapsed to the best score (as ordered by
+ * {@link ElympicsHighscore#compareTo(ElympicsHighscore)}) until the batch is flushed, which happens once the batch
+ * reaches its maximum size, once the maximum delay has passed since the first buffered submission, or when
+ * {@link #flush()} is called. At most {@code parallelism} submissions are sent at the same time.
+ */
+public final class HighscoreSubmissionQueue implements Closeable {
+
+    private final Elympics root;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int parallelism;
+
+    private final Queue<Pending> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Object lock = new Object();
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    private static class Pending {
+        ElympicsHighscore highscore;
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+
+        private Pending(ElympicsHighscore highscore) {
+            this.highscore = highscore;
+        }
+    }
+
+    HighscoreSubmissionQueue(Elympics root, int batchSize, long maxDelay, TimeUnit unit, int parallelism) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.root = root;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Adds a high score to the current batch. If the player already has a submission in the batch, only the better
+     * of the two scores is sent.
+     *
+     * @param highscore The high score
+     * @return A future completed once the best buffered score for the player has been submitted
+     * @throws IllegalStateException If the queue has been closed
+     */
+    public CompletableFuture<Void> submit(ElympicsHighscore highscore) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        List<Pending> batch = null;
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("Submission queue is closed");
+            Pending entry = pending.get(highscore.getName());
+            if (entry == null) {
+                entry = new Pending(highscore);
+                pending.put(highscore.getName(), entry);
+            } else if (highscore.compareTo(entry.highscore) < 0) {
+                entry.highscore = highscore;
+            }
+            entry.futures.add(future);
+            if (pending.size() >= batchSize) {
+                batch = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = ElympicsExecutors.scheduler()
+                        .schedule(this::flush, maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch != null) dispatch(batch);
+        return future;
+    }
+
+    /**
+     * Sends every buffered submission without waiting for the batch to fill up or the delay to pass.
+     *
+     * @return A future completed once all the submissions buffered at the time of the call have completed,
+     * successfully or not
+     */
+    public CompletableFuture<Void> flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        dispatch(batch);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Pending entry : batch) {
+            futures.addAll(entry.futures);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+                .handle((result, exception) -> null);
+    }
+
+    /**
+     * Flushes the queue and waits for the outstanding submissions to complete. Failed submissions are reported
+     * through the futures returned by {@link #submit(ElympicsHighscore)}, not by this method.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+        }
+        flush().join();
+    }
+
+    private List<Pending> drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<Pending> batch = new ArrayList<>(pending.values());
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        ready.addAll(batch);
+        pump();
+    }
+
+    private void pump() {
+        while (!ready.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= parallelism) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+            Pending entry = ready.poll();
+            if (entry == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            root.submitHighscoreAsync(entry.highscore).whenComplete((result, exception) -> {
+                inFlight.decrementAndGet();
+                for (CompletableFuture<Void> future : entry.futures) {
+                    if (exception == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(exception);
+                    }
+                }
+                pump();
+            });
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+/**
+ * Sends the HTTP requests made by {@link Requester}.
+ *
+ * The default transport opens an {@link java.net.HttpURLConnection} per request through an {@link HttpConnector}.
+ * {@link #httpClient()} returns one built on {@code java.net.http.HttpClient}, which pools its connections and
+ * multiplexes concurrent requests over HTTP/2, so they share a few TLS connections.
+ */
+public interface HttpTransport {
+
+    /**
+     * Default transport, opening connections with {@link HttpConnector#DEFAULT}.
+     */
+    HttpTransport DEFAULT = new HttpURLConnectionTransport(HttpConnector.DEFAULT);
+
+    /**
+     * Starts a request.
+     *
+     * @param url The URL
+     * @param method The request method, which may be a verb {@link java.net.HttpURLConnection} does not allow
+     * @return The exchange, which sends the request when it is connected
+     * @throws IOException If the request cannot be made
+     */
+    Exchange open(URL url, String method) throws IOException;
+
+    /**
+     * Gets a transport built on {@code java.net.http.HttpClient}, with the timeouts of {@link ImpatientHttpConnector}.
+     * Each call creates a new client, so share the transport between {@link Elympics} instances to share its
+     * connections.
+     *
+     * @return The transport
+     * @throws UnsupportedOperationException If running on Java 10 or older
+     */
+    static HttpTransport httpClient() {
+        try {
+            Class<?> type = Class.forName("games.dollarone.elympics.HttpClientTransport");
+            return (HttpTransport) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("java.net.http.HttpClient requires Java 11 or newer", e);
+        }
+    }
+
+    /**
+     * A single request and its response. Headers and the body length are set before {@link #connect()}, the body is
+     * written to {@link #getOutputStream()} after it, and the response is read once the body is written.
+     */
+    interface Exchange {
+
+        URL getURL();
+
+        /**
+         * Sets a request header, replacing any previous value.
+         */
+        void setRequestProperty(String name, String value);
+
+        /**
+         * Declares that the request has a body.
+         *
+         * @param length The length of the body, or -1 if not known up front
+         * @param chunkSize The size of the chunks to stream a body of unknown length in, or 0 to buffer it
+         */
+        void setBodyLength(long length, int chunkSize);
+
+        /**
+         * Opens the connection, or starts sending the request if it has no body. A transport may return before the
+         * connection is established.
+         *
+         * @throws IOException If the connection fails
+         */
+        void connect() throws IOException;
+
+        OutputStream getOutputStream() throws IOException;
+
+        /**
+         * Gets the status code of the response, waiting for it.
+         *
+         * @return The status code
+         * @throws IOException If there is no response
+         */
+        int getResponseCode() throws IOException;
+
+        /**
+         * Gets the reason phrase of the response, waiting for it.
+         *
+         * @return The reason phrase, or {@code null} if there is none, as in HTTP/2
+         * @throws IOException If there is no response
+         */
+        String getResponseMessage() throws IOException;
+
+        /**
+         * Gets a response header.
+         *
+         * @return The first value of the header, or {@code null} if it is missing or there is no response
+         */
+        String getHeaderField(String name);
+
+        /**
+         * Gets the body of a successful response.
+         *
+         * @return The body
+         * @throws java.io.FileNotFoundException If the response is a {@code 404} or {@code 410}
+         * @throws IOException If there is no response, or it is any other error
+         */
+        InputStream getInputStream() throws IOException;
+
+        /**
+         * Gets the body of an error response.
+         *
+         * @return The body, or {@code null} if the response is not an error or has no body
+         */
+        InputStream getErrorStream();
+
+        /**
+         * Aborts the request, from any thread.
+         */
+        void disconnect();
+    }
+
+}
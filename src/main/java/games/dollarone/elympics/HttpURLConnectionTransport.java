@@ -0,0 +1,161 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+
+/**
+ * {@link HttpTransport} opening an {@link HttpURLConnection} per request through an {@link HttpConnector}. Kept-alive
+ * connections are reused through the JDK's keep-alive cache, once a response body has been read to the end.
+ */
+final class HttpURLConnectionTransport implements HttpTransport {
+
+    /**
+     * Declared fields used to force custom verbs, looked up once per connection class.
+     */
+    private static final ClassValue<Field> METHOD_FIELDS = new DeclaredFieldValue("method");
+    private static final ClassValue<Field> DELEGATE_FIELDS = new DeclaredFieldValue("delegate");
+
+    private final HttpConnector connector;
+
+    HttpURLConnectionTransport(HttpConnector connector) {
+        this.connector = connector;
+    }
+
+    HttpConnector getConnector() {
+        return connector;
+    }
+
+    @Override
+    public Exchange open(URL url, String method) throws IOException {
+        HttpURLConnection connection = connector.connect(url);
+        setRequestMethod(connection, method);
+        return new ConnectionExchange(connection);
+    }
+
+    private static void setRequestMethod(HttpURLConnection connection, String method) throws IOException {
+        try {
+            connection.setRequestMethod(method);
+        } catch (ProtocolException e) {
+            // JDK only allows one of the fixed set of verbs. Try to override that
+            try {
+                Field $method = METHOD_FIELDS.get(HttpURLConnection.class);
+                if ($method == null) throw new NoSuchFieldException("method");
+                $method.set(connection,method);
+            } catch (Exception x) {
+                throw new IOException("Failed to set the custom verb", x);
+            }
+            // sun.net.www.protocol.https.DelegatingHttpsURLConnection delegates to another HttpURLConnection
+            try {
+                Field $delegate = DELEGATE_FIELDS.get(connection.getClass());
+                if ($delegate != null) {
+                    Object delegate = $delegate.get(connection);
+                    if (delegate instanceof HttpURLConnection) {
+                        HttpURLConnection nested = (HttpURLConnection) delegate;
+                        setRequestMethod(nested, method);
+                    }
+                }
+            } catch (IllegalAccessException x) {
+                throw new IOException("Failed to set the custom verb", x);
+            }
+        }
+        if (!connection.getRequestMethod().equals(method))
+            throw new IllegalStateException("Failed to set the request method to "+method);
+    }
+
+    private static final class ConnectionExchange implements Exchange {
+        private final HttpURLConnection connection;
+
+        private ConnectionExchange(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public URL getURL() {
+            return connection.getURL();
+        }
+
+        @Override
+        public void setRequestProperty(String name, String value) {
+            connection.setRequestProperty(name, value);
+        }
+
+        @Override
+        public void setBodyLength(long length, int chunkSize) {
+            connection.setDoOutput(true);
+            if (length >= 0) {
+                // the body is written straight to the socket without being copied
+                connection.setFixedLengthStreamingMode(length);
+            } else if (chunkSize > 0) {
+                connection.setChunkedStreamingMode(chunkSize);
+            }
+        }
+
+        @Override
+        public void connect() throws IOException {
+            connection.connect();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return connection.getOutputStream();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return connection.getInputStream();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return connection.getErrorStream();
+        }
+
+        @Override
+        public void disconnect() {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Looks up an accessible declared field of the given name, or {@code null} if there is no such field.
+     */
+    private static final class DeclaredFieldValue extends ClassValue<Field> {
+        private final String name;
+
+        private DeclaredFieldValue(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected Field computeValue(Class<?> type) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                return null;
+            }
+        }
+    }
+
+}
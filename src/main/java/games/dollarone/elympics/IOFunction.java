@@ -0,0 +1,23 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+
+/**
+ * A function which may fail with an {@link IOException}, such as a blocking request to Elympics.
+ *
+ * @param <T> The type of the argument
+ * @param <R> The type of the result
+ */
+@FunctionalInterface
+interface IOFunction<T, R> {
+
+    /**
+     * Applies the function.
+     *
+     * @param argument The argument
+     * @return The result
+     * @throws IOException If the result could not be obtained
+     */
+    R apply(T argument) throws IOException;
+
+}
@@ -0,0 +1,21 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+
+/**
+ * A supplier of a result which may fail with an {@link IOException}, such as a blocking request to Elympics.
+ *
+ * @param <T> The type of the result
+ */
+@FunctionalInterface
+interface IOSupplier<T> {
+
+    /**
+     * Gets the result.
+     *
+     * @return The result
+     * @throws IOException If the result could not be obtained
+     */
+    T get() throws IOException;
+
+}
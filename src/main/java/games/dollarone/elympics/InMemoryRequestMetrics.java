@@ -0,0 +1,216 @@
+package games.dollarone.elympics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RequestMetrics} keeping lock-free counters and {@linkplain LatencyHistogram latency histograms} per endpoint in
+ * memory, which can be read at any time through {@link #snapshot()}.
+ */
+public final class InMemoryRequestMetrics implements RequestMetrics {
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private static final class EndpointMetrics {
+        final LatencyHistogram connect = new LatencyHistogram();
+        final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+        final LongAdder requests = new LongAdder();
+        final LongAdder requestBytes = new LongAdder();
+        final LongAdder requestWireBytes = new LongAdder();
+        final LongAdder responseWireBytes = new LongAdder();
+        final LongAdder responseBytes = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder hedges = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder cacheMisses = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final ConcurrentMap<Integer, LongAdder> responseCodes = new ConcurrentHashMap<>();
+    }
+
+    private EndpointMetrics endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new EndpointMetrics());
+    }
+
+    @Override
+    public void recordRequest(RequestSample sample) {
+        EndpointMetrics metrics = endpoint(sample.getEndpoint());
+        metrics.requests.increment();
+        if (sample.getConnectNanos() >= 0) metrics.connect.record(sample.getConnectNanos());
+        if (sample.getTimeToFirstByteNanos() >= 0) metrics.timeToFirstByte.record(sample.getTimeToFirstByteNanos());
+        metrics.total.record(sample.getTotalNanos());
+        metrics.requestBytes.add(sample.getRequestBytes());
+        metrics.requestWireBytes.add(sample.getRequestWireBytes());
+        metrics.responseWireBytes.add(sample.getResponseWireBytes());
+        metrics.responseBytes.add(sample.getResponseBytes());
+        metrics.responseCodes.computeIfAbsent(sample.getResponseCode(), code -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void recordRetry(String endpoint) {
+        endpoint(endpoint).retries.increment();
+    }
+
+    @Override
+    public void recordHedge(String endpoint) {
+        endpoint(endpoint).hedges.increment();
+    }
+
+    @Override
+    public void recordCacheHit(String endpoint) {
+        endpoint(endpoint).cacheHits.increment();
+    }
+
+    @Override
+    public void recordCacheMiss(String endpoint) {
+        endpoint(endpoint).cacheMisses.increment();
+    }
+
+    @Override
+    public void recordCoalesced(String endpoint) {
+        endpoint(endpoint).coalesced.increment();
+    }
+
+    /**
+     * Gets the histogram of total request times for an endpoint, which keeps updating as requests are made.
+     *
+     * @param endpoint The endpoint
+     * @return The histogram of nanoseconds
+     */
+    public LatencyHistogram getTotalLatency(String endpoint) {
+        return endpoint(endpoint).total;
+    }
+
+    /**
+     * Takes a copy of the metrics recorded so far.
+     *
+     * @return The metrics of each endpoint
+     */
+    public Map<String, EndpointSnapshot> snapshot() {
+        Map<String, EndpointSnapshot> snapshot = new HashMap<>();
+        for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+            snapshot.put(entry.getKey(), new EndpointSnapshot(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * A copy of the metrics of one endpoint.
+     */
+    public static final class EndpointSnapshot {
+        private final LatencyHistogram.Snapshot connect;
+        private final LatencyHistogram.Snapshot timeToFirstByte;
+        private final LatencyHistogram.Snapshot total;
+        private final long requests;
+        private final long requestBytes;
+        private final long requestWireBytes;
+        private final long responseWireBytes;
+        private final long responseBytes;
+        private final long retries;
+        private final long hedges;
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final long coalesced;
+        private final Map<Integer, Long> responseCodes;
+
+        private EndpointSnapshot(EndpointMetrics metrics) {
+            this.connect = metrics.connect.snapshot();
+            this.timeToFirstByte = metrics.timeToFirstByte.snapshot();
+            this.total = metrics.total.snapshot();
+            this.requests = metrics.requests.sum();
+            this.requestBytes = metrics.requestBytes.sum();
+            this.requestWireBytes = metrics.requestWireBytes.sum();
+            this.responseWireBytes = metrics.responseWireBytes.sum();
+            this.responseBytes = metrics.responseBytes.sum();
+            this.retries = metrics.retries.sum();
+            this.hedges = metrics.hedges.sum();
+            this.cacheHits = metrics.cacheHits.sum();
+            this.cacheMisses = metrics.cacheMisses.sum();
+            this.coalesced = metrics.coalesced.sum();
+            Map<Integer, Long> codes = new HashMap<>();
+            for (Map.Entry<Integer, LongAdder> entry : metrics.responseCodes.entrySet()) {
+                codes.put(entry.getKey(), entry.getValue().sum());
+            }
+            this.responseCodes = Collections.unmodifiableMap(codes);
+        }
+
+        /**
+         * Histogram of connection times in nanoseconds.
+         */
+        public LatencyHistogram.Snapshot getConnect() {
+            return connect;
+        }
+
+        /**
+         * Histogram of times to the response headers in nanoseconds.
+         */
+        public LatencyHistogram.Snapshot getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        /**
+         * Histogram of total request times in nanoseconds.
+         */
+        public LatencyHistogram.Snapshot getTotal() {
+            return total;
+        }
+
+        /**
+         * Number of attempts, including retried ones.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getRequestBytes() {
+            return requestBytes;
+        }
+
+        public long getRequestWireBytes() {
+            return requestWireBytes;
+        }
+
+        public long getResponseWireBytes() {
+            return responseWireBytes;
+        }
+
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getHedges() {
+            return hedges;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * Number of reads that shared a request already in flight instead of making one.
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        /**
+         * Number of attempts by response code, with {@code -1} for attempts that received no response.
+         */
+        public Map<Integer, Long> getResponseCodes() {
+            return responseCodes;
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Client side cache of the leaderboard returned by {@link Elympics#getHighscores()}.
+ *
+ * A cached leaderboard is returned as is until it is older than the time to live. After that it is still returned for
+ * the stale-while-revalidate period while it is refreshed in the background, and past that it is refreshed before
+ * returning. Refreshes are conditional requests using the {@code ETag} and {@code Last-Modified} validators of the
+ * cached response, so an unchanged leaderboard costs a {@code 304 Not Modified} without a body.
+ *
+ * With a {@linkplain ElympicsBuilder#withSnapshot(java.io.File) snapshot}, each newly fetched leaderboard is saved to
+ * a file and restored when the cache is created. A restored leaderboard is returned even once it is older than the
+ * stale-while-revalidate period, while it is refreshed in the background, until a refresh succeeds.
+ */
+public final class LeaderboardCache {
+
+    private static final Logger LOGGER = Logger.getLogger(LeaderboardCache.class.getName());
+
+    private static final String ENDPOINT = "/getHighscores";
+
+    private final Elympics root;
+    private final long ttlMillis;
+    private final long staleWhileRevalidateMillis;
+
+    private final LeaderboardCacheBudget budget;
+    private LeaderboardSnapshot snapshot;
+
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+    private volatile Entry entry;
+    private volatile boolean restored;
+    volatile long lastAccessed;
+
+    /**
+     * A fetched leaderboard along with the validators needed to revalidate it.
+     */
+    static final class Entry {
+        final List<ElympicsHighscore> highscores;
+        final long fetchedAt;
+        final String etag;
+        final String lastModified;
+
+        Entry(List<ElympicsHighscore> highscores, long fetchedAt, String etag, String lastModified) {
+            this.highscores = highscores;
+            this.fetchedAt = fetchedAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Creates the entry resulting from a {@code 304 Not Modified} response to a revalidation of this entry.
+         */
+        Entry revalidated(long fetchedAt, String etag, String lastModified) {
+            return new Entry(highscores, fetchedAt,
+                    etag != null ? etag : this.etag,
+                    lastModified != null ? lastModified : this.lastModified);
+        }
+    }
+
+    LeaderboardCache(Elympics root, long ttl, long staleWhileRevalidate, TimeUnit unit, LeaderboardCacheBudget budget) {
+        this.root = root;
+        this.budget = budget;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.staleWhileRevalidateMillis = unit.toMillis(staleWhileRevalidate);
+    }
+
+    /**
+     * Gets the leaderboard, refreshing it first if there is no usable cached copy.
+     *
+     * @return The cached leaderboard, which is unmodifiable
+     * @throws IOException If the leaderboard had to be refreshed and the request failed
+     */
+    List<ElympicsHighscore> get() throws IOException {
+        if (budget != null) lastAccessed = System.nanoTime();
+        Entry current = entry;
+        if (current != null) {
+            long age = System.currentTimeMillis() - current.fetchedAt;
+            if (age < ttlMillis) {
+                root.getMetrics().recordCacheHit(ENDPOINT);
+                return current.highscores;
+            }
+            if (age < ttlMillis + staleWhileRevalidateMillis || restored) {
+                root.getMetrics().recordCacheHit(ENDPOINT);
+                revalidateInBackground(current);
+                return current.highscores;
+            }
+        }
+        root.getMetrics().recordCacheMiss(ENDPOINT);
+        return revalidate(current).highscores;
+    }
+
+    /**
+     * Restores the leaderboard saved in the snapshot, unless one was already fetched, and saves each newly fetched
+     * leaderboard from then on. An unreadable snapshot is ignored, to be replaced by the next fetch.
+     */
+    void setSnapshot(LeaderboardSnapshot snapshot) {
+        this.snapshot = snapshot;
+        Entry saved;
+        try {
+            saved = snapshot.read();
+        } catch (IOException exception) {
+            LOGGER.log(WARNING, "Ignoring unreadable leaderboard snapshot " + snapshot.getFile(), exception);
+            return;
+        }
+        if (saved == null || entry != null) return;
+        entry = saved;
+        if (budget != null) budget.stored(this, saved.highscores);
+        if (System.currentTimeMillis() - saved.fetchedAt >= ttlMillis + staleWhileRevalidateMillis) {
+            restored = true;
+            revalidateInBackground(saved);
+        }
+    }
+
+    /**
+     * Marks the cached leaderboard as expired, so the next call refreshes it. The validators are kept, so the refresh
+     * is still a conditional request.
+     */
+    public void expire() {
+        Entry current = entry;
+        if (current != null) {
+            entry = new Entry(current.highscores, Long.MIN_VALUE / 2, current.etag, current.lastModified);
+        }
+        restored = false;
+    }
+
+    /**
+     * Discards the cached leaderboard and its validators.
+     */
+    public void invalidate() {
+        entry = null;
+        restored = false;
+        if (budget != null) budget.released(this);
+    }
+
+    private Entry revalidate(Entry current) throws IOException {
+        Entry fetched = root.fetchHighscores(current);
+        entry = fetched;
+        restored = false;
+        if (current == null || fetched.highscores != current.highscores) {
+            if (budget != null) budget.stored(this, fetched.highscores);
+            if (snapshot != null) snapshot.saveInBackground(fetched);
+        }
+        return fetched;
+    }
+
+    private void revalidateInBackground(Entry current) {
+        if (!revalidating.compareAndSet(false, true)) return;
+        root.async(() -> revalidate(current)).whenComplete((result, exception) -> {
+            revalidating.set(false);
+            if (exception != null && LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "Failed to revalidate cached leaderboard", exception);
+            }
+        });
+    }
+
+}
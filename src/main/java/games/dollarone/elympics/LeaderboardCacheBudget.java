@@ -0,0 +1,61 @@
+package games.dollarone.elympics;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bound on the memory taken by the {@link LeaderboardCache}s of several Elympics instances. When a cache stores a
+ * leaderboard that takes the total over the budget, the least recently read other caches are invalidated until it
+ * fits again.
+ *
+ * Sizes are estimates of the heap taken by the cached high scores, not exact measurements.
+ */
+final class LeaderboardCacheBudget {
+
+    private static final int HIGHSCORE_OVERHEAD = 112;
+
+    private final long maxBytes;
+    private final Map<LeaderboardCache, Long> sizes = new IdentityHashMap<>();
+    private long totalBytes;
+
+    LeaderboardCacheBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized void stored(LeaderboardCache cache, List<ElympicsHighscore> highscores) {
+        long size = estimateSize(highscores);
+        Long previous = sizes.put(cache, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        while (totalBytes > maxBytes && sizes.size() > 1) {
+            LeaderboardCache leastRecent = null;
+            for (LeaderboardCache candidate : sizes.keySet()) {
+                if (candidate != cache && (leastRecent == null
+                        || candidate.lastAccessed - leastRecent.lastAccessed < 0)) {
+                    leastRecent = candidate;
+                }
+            }
+            totalBytes -= sizes.remove(leastRecent);
+            leastRecent.invalidate();
+        }
+    }
+
+    synchronized void released(LeaderboardCache cache) {
+        Long size = sizes.remove(cache);
+        if (size != null) totalBytes -= size;
+    }
+
+    synchronized long getUsedBytes() {
+        return totalBytes;
+    }
+
+    private static long estimateSize(List<ElympicsHighscore> highscores) {
+        long size = 0;
+        for (ElympicsHighscore highscore : highscores) {
+            String name = highscore.getName();
+            size += HIGHSCORE_OVERHEAD + (name != null ? 2L * name.length() : 0);
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,157 @@
+package games.dollarone.elympics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Differences between two polls of the leaderboard, keyed by player name.
+ *
+ * Each player is represented by their best entry. Ranks start at 1 for the best score.
+ */
+public final class LeaderboardDiff {
+
+    static final LeaderboardDiff NONE = new LeaderboardDiff(Collections.emptyList(), Collections.emptyList(),
+            Collections.emptyList());
+
+    private final List<ElympicsHighscore> inserted;
+    private final List<ElympicsHighscore> removed;
+    private final List<Change> changed;
+
+    /**
+     * An entry whose score or rank changed between the two polls.
+     */
+    public static final class Change {
+        private final ElympicsHighscore previous;
+        private final ElympicsHighscore current;
+        private final int previousRank;
+        private final int currentRank;
+
+        private Change(ElympicsHighscore previous, ElympicsHighscore current, int previousRank, int currentRank) {
+            this.previous = previous;
+            this.current = current;
+            this.previousRank = previousRank;
+            this.currentRank = currentRank;
+        }
+
+        public ElympicsHighscore getPrevious() {
+            return previous;
+        }
+
+        public ElympicsHighscore getCurrent() {
+            return current;
+        }
+
+        public int getPreviousRank() {
+            return previousRank;
+        }
+
+        public int getCurrentRank() {
+            return currentRank;
+        }
+
+        public boolean isScoreChanged() {
+            return !Objects.equals(previous.getScore(), current.getScore());
+        }
+    }
+
+    /**
+     * The leaderboard as of one poll: the best entry of each player from best to worst score, and the rank of each
+     * player.
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), Collections.emptyMap());
+
+        final List<ElympicsHighscore> entries;
+        final Map<String, Integer> ranks;
+
+        private Snapshot(List<ElympicsHighscore> entries, Map<String, Integer> ranks) {
+            this.entries = entries;
+            this.ranks = ranks;
+        }
+
+        static Snapshot of(List<ElympicsHighscore> highscores) {
+            List<ElympicsHighscore> sorted = new ArrayList<>(highscores);
+            Collections.sort(sorted);
+            List<ElympicsHighscore> entries = new ArrayList<>(sorted.size());
+            Map<String, Integer> ranks = new HashMap<>(sorted.size() * 4 / 3 + 1);
+            for (ElympicsHighscore highscore : sorted) {
+                if (!ranks.containsKey(highscore.getName())) {
+                    entries.add(highscore);
+                    ranks.put(highscore.getName(), entries.size());
+                }
+            }
+            return new Snapshot(Collections.unmodifiableList(entries), ranks);
+        }
+    }
+
+    private LeaderboardDiff(List<ElympicsHighscore> inserted, List<ElympicsHighscore> removed, List<Change> changed) {
+        this.inserted = inserted;
+        this.removed = removed;
+        this.changed = changed;
+    }
+
+    static LeaderboardDiff between(Snapshot previous, Snapshot current) {
+        List<ElympicsHighscore> inserted = new ArrayList<>();
+        List<ElympicsHighscore> removed = new ArrayList<>();
+        List<Change> changed = new ArrayList<>();
+        for (int i = 0; i < current.entries.size(); i++) {
+            ElympicsHighscore entry = current.entries.get(i);
+            Integer previousRank = previous.ranks.get(entry.getName());
+            if (previousRank == null) {
+                inserted.add(entry);
+            } else {
+                ElympicsHighscore previousEntry = previous.entries.get(previousRank - 1);
+                if (previousRank != i + 1 || !Objects.equals(previousEntry.getScore(), entry.getScore())) {
+                    changed.add(new Change(previousEntry, entry, previousRank, i + 1));
+                }
+            }
+        }
+        if (previous.entries.size() + inserted.size() > current.entries.size()) {
+            for (ElympicsHighscore entry : previous.entries) {
+                if (!current.ranks.containsKey(entry.getName())) removed.add(entry);
+            }
+        }
+        return new LeaderboardDiff(inserted, removed, changed);
+    }
+
+    /**
+     * Gets the entries of players who were not on the previous leaderboard.
+     *
+     * @return The inserted entries, from best to worst score
+     */
+    public List<ElympicsHighscore> getInserted() {
+        return Collections.unmodifiableList(inserted);
+    }
+
+    /**
+     * Gets the entries of players who are no longer on the leaderboard.
+     *
+     * @return The removed entries as they were on the previous leaderboard, from best to worst score
+     */
+    public List<ElympicsHighscore> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Gets the entries of players whose score or rank changed.
+     *
+     * @return The changes, from best to worst current score
+     */
+    public List<Change> getChanged() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * Checks whether the leaderboard is unchanged.
+     *
+     * @return {@code true} if nothing was inserted, removed or changed
+     */
+    public boolean isEmpty() {
+        return inserted.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+}
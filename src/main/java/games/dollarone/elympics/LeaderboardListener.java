@@ -0,0 +1,27 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+
+/**
+ * Receives changes to the leaderboard from a {@link LeaderboardWatcher}.
+ */
+@FunctionalInterface
+public interface LeaderboardListener {
+
+    /**
+     * Called after a poll found the leaderboard changed.
+     *
+     * @param diff The changes since the previous poll
+     */
+    void onChange(LeaderboardDiff diff);
+
+    /**
+     * Called when a poll fails. The watcher keeps polling.
+     *
+     * @param exception The failure
+     */
+    default void onError(IOException exception) {
+
+    }
+
+}
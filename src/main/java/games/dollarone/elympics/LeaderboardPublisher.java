@@ -0,0 +1,187 @@
+package games.dollarone.elympics;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reactive Streams {@link Publisher} of the leaderboard, emitting the best entry of each player from best to worst
+ * score whenever a poll finds it changed.
+ *
+ * All subscribers share a single {@link LeaderboardWatcher}, started by the first subscription and stopped once the
+ * last one is cancelled. Emissions respect each subscriber's demand: a subscriber that is not ready for the next
+ * leaderboard only receives the latest one once it requests more, skipping those in between. A new subscriber
+ * receives the latest leaderboard straight away if there is one. Failed polls are not signalled, polling carries on.
+ */
+public final class LeaderboardPublisher implements Publisher<List<ElympicsHighscore>>, Closeable {
+
+    private final Elympics root;
+    private final long period;
+    private final TimeUnit unit;
+
+    private final List<LeaderboardSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile List<ElympicsHighscore> latest;
+    private LeaderboardWatcher watcher;
+    private boolean closed;
+
+    LeaderboardPublisher(Elympics root, long period, TimeUnit unit) {
+        this.root = root;
+        this.period = period;
+        this.unit = unit;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super List<ElympicsHighscore>> subscriber) {
+        if (subscriber == null) throw new NullPointerException("Subscriber must not be null");
+        LeaderboardSubscription subscription = new LeaderboardSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        boolean open;
+        synchronized (this) {
+            open = !closed;
+            if (open && !subscription.cancelled) {
+                subscriptions.add(subscription);
+                if (watcher == null) {
+                    watcher = root.watchHighscores(period, unit, diff -> publish(watcher()));
+                }
+            }
+        }
+        if (!open) {
+            subscription.complete();
+            return;
+        }
+        List<ElympicsHighscore> current = latest;
+        if (current != null) subscription.offer(current);
+    }
+
+    private synchronized LeaderboardWatcher watcher() {
+        return watcher;
+    }
+
+    private void publish(LeaderboardWatcher source) {
+        if (source == null) return;
+        List<ElympicsHighscore> current = Collections.unmodifiableList(source.getSnapshot());
+        latest = current;
+        for (LeaderboardSubscription subscription : subscriptions) {
+            subscription.offer(current);
+        }
+    }
+
+    private synchronized void remove(LeaderboardSubscription subscription) {
+        subscriptions.remove(subscription);
+        if (subscriptions.isEmpty() && watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Gets the number of active subscriptions.
+     *
+     * @return The number of subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Stops polling and completes every subscription.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        }
+        for (LeaderboardSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * Delivers the latest leaderboard to one subscriber as demand allows. Signals are serialized by the work counter,
+     * so whichever thread offers, requests or completes ends up draining for the others.
+     */
+    private final class LeaderboardSubscription implements Subscription {
+        private final Subscriber<? super List<ElympicsHighscore>> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicReference<List<ElympicsHighscore>> pending = new AtomicReference<>();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile Throwable error;
+        private boolean terminated;
+
+        private LeaderboardSubscription(Subscriber<? super List<ElympicsHighscore>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " leaderboards, must be positive");
+            } else {
+                long current;
+                do {
+                    current = requested.get();
+                    if (current == Long.MAX_VALUE) break;
+                } while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        void offer(List<ElympicsHighscore> leaderboard) {
+            pending.set(leaderboard);
+            drain();
+        }
+
+        void complete() {
+            completed = true;
+            drain();
+        }
+
+        private void drain() {
+            if (work.getAndIncrement() != 0) return;
+            do {
+                if (terminated || cancelled) continue;
+                if (error != null) {
+                    terminated = true;
+                    cancel();
+                    subscriber.onError(error);
+                    continue;
+                }
+                if (requested.get() > 0) {
+                    List<ElympicsHighscore> next = pending.getAndSet(null);
+                    if (next != null) {
+                        if (requested.get() != Long.MAX_VALUE) requested.decrementAndGet();
+                        subscriber.onNext(next);
+                    }
+                }
+                if (completed && !terminated) {
+                    terminated = true;
+                    subscriber.onComplete();
+                }
+            } while (work.decrementAndGet() != 0);
+        }
+    }
+
+}
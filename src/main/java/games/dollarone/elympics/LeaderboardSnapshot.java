@@ -0,0 +1,199 @@
+package games.dollarone.elympics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Binary file holding the last leaderboard fetched by a {@link LeaderboardCache}, along with when it was fetched and
+ * its validators, so the cache starts warm after a restart.
+ *
+ * The file holds a header, the fetch time, the {@code ETag} and {@code Last-Modified} validators, the entries, and a
+ * checksum of all of it. Names are length-prefixed UTF-8, scores are 8 bytes unless they overflow a {@code long}.
+ * A snapshot is written to a temporary file which then replaces the previous one, so a crash while saving leaves the
+ * previous snapshot in place.
+ */
+final class LeaderboardSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(LeaderboardSnapshot.class.getName());
+
+    private static final int MAGIC = 0x454C5331; // "ELS1"
+    private static final int VERSION = 1;
+    private static final byte NULL_SCORE = 0;
+    private static final byte LONG_SCORE = 1;
+    private static final byte BIG_SCORE = 2;
+
+    private final Elympics root;
+    private final File file;
+
+    private final AtomicReference<LeaderboardCache.Entry> pending = new AtomicReference<>();
+    private long savedFetchedAt = Long.MIN_VALUE;
+
+    LeaderboardSnapshot(Elympics root, File file) {
+        this.root = root;
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the saved leaderboard.
+     *
+     * @return The saved entry, or {@code null} if nothing was saved yet
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    LeaderboardCache.Entry read() throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (bytes.length < 16) throw new IOException("Truncated leaderboard snapshot " + file);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a leaderboard snapshot " + file);
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported leaderboard snapshot version " + version);
+        if (buffer.getLong(bytes.length - 8) != crc.getValue()) {
+            throw new IOException("Corrupt leaderboard snapshot " + file);
+        }
+        buffer.limit(bytes.length - 8);
+        try {
+            long fetchedAt = buffer.getLong();
+            String etag = getString(buffer);
+            String lastModified = getString(buffer);
+            int count = buffer.getInt();
+            List<ElympicsHighscore> highscores = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = getString(buffer);
+                byte type = buffer.get();
+                if (type == LONG_SCORE) {
+                    highscores.add(new ElympicsHighscore(name, buffer.getLong()));
+                } else if (type == BIG_SCORE) {
+                    byte[] score = new byte[buffer.getInt()];
+                    buffer.get(score);
+                    highscores.add(new ElympicsHighscore(name, new BigInteger(score)));
+                } else {
+                    highscores.add(new ElympicsHighscore(name, (BigInteger) null));
+                }
+            }
+            synchronized (this) {
+                savedFetchedAt = Math.max(savedFetchedAt, fetchedAt);
+            }
+            return new LeaderboardCache.Entry(Collections.unmodifiableList(highscores), fetchedAt, etag,
+                    lastModified);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt leaderboard snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Saves an entry in the background. Entries saved while a previous one is being written are coalesced, so only
+     * the latest is written next.
+     */
+    void saveInBackground(LeaderboardCache.Entry entry) {
+        if (pending.getAndSet(entry) != null) return;
+        root.async(() -> {
+            LeaderboardCache.Entry next;
+            try {
+                while ((next = pending.get()) != null) {
+                    save(next);
+                    pending.compareAndSet(next, null);
+                }
+            } catch (IOException e) {
+                pending.set(null);
+                throw e;
+            }
+            return null;
+        }).whenComplete((result, exception) -> {
+            if (exception != null && LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "Failed to save leaderboard snapshot " + file, exception);
+            }
+        });
+    }
+
+    /**
+     * Saves an entry, unless one fetched later was already saved.
+     */
+    synchronized void save(LeaderboardCache.Entry entry) throws IOException {
+        if (entry.fetchedAt <= savedFetchedAt) return;
+        File temporary = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream stream = new FileOutputStream(temporary)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, crc),
+                    64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(entry.fetchedAt);
+            putString(out, entry.etag);
+            putString(out, entry.lastModified);
+            out.writeInt(entry.highscores.size());
+            for (ElympicsHighscore highscore : entry.highscores) {
+                putString(out, highscore.getName());
+                if (highscore.hasLongScore()) {
+                    out.writeByte(LONG_SCORE);
+                    out.writeLong(highscore.getLongScore());
+                } else if (highscore.getScore() == null) {
+                    out.writeByte(NULL_SCORE);
+                } else if (highscore.getScore().bitLength() < Long.SIZE) {
+                    out.writeByte(LONG_SCORE);
+                    out.writeLong(highscore.getScore().longValue());
+                } else {
+                    byte[] score = highscore.getScore().toByteArray();
+                    out.writeByte(BIG_SCORE);
+                    out.writeInt(score.length);
+                    out.write(score);
+                }
+            }
+            out.flush();
+            // the checksum covers everything written before it
+            new DataOutputStream(stream).writeLong(crc.getValue());
+            stream.getFD().sync();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        savedFetchedAt = entry.fetchedAt;
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) return null;
+        if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Bad length " + length);
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+}
@@ -0,0 +1,120 @@
+package games.dollarone.elympics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Polls the leaderboard and notifies listeners of what changed since the previous poll.
+ *
+ * Listeners only receive the entries that were inserted, removed or changed, so the work they do is proportional to
+ * the change rather than to the size of the leaderboard. The first poll reports every entry as inserted. Polls run
+ * on the {@linkplain Elympics#getExecutor() executor}, timed by the scheduler shared by every instance.
+ */
+public final class LeaderboardWatcher implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(LeaderboardWatcher.class.getName());
+
+    private final Elympics root;
+    private final List<LeaderboardListener> listeners = new CopyOnWriteArrayList<>();
+    private final long periodNanos;
+    private volatile LeaderboardDiff.Snapshot snapshot = LeaderboardDiff.Snapshot.EMPTY;
+    private List<ElympicsHighscore> polled;
+    private final Object scheduleLock = new Object();
+    private ScheduledFuture<?> nextPoll;
+    private boolean closed;
+
+    LeaderboardWatcher(Elympics root, long period, TimeUnit unit, LeaderboardListener listener) {
+        this.root = root;
+        this.periodNanos = unit.toNanos(period);
+        listeners.add(listener);
+        root.getExecutor().execute(this::pollQuietly);
+    }
+
+    public void addListener(LeaderboardListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LeaderboardListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the leaderboard as of the latest poll.
+     *
+     * @return The best entry of each player, from best to worst score
+     */
+    public List<ElympicsHighscore> getSnapshot() {
+        return snapshot.entries;
+    }
+
+    /**
+     * Polls the leaderboard now and notifies the listeners if it changed.
+     *
+     * @return The changes since the previous poll
+     * @throws IOException If the request fails
+     */
+    public synchronized LeaderboardDiff poll() throws IOException {
+        List<ElympicsHighscore> highscores = root.readHighscores();
+        // a cache returns the same list for as long as the leaderboard is unchanged
+        if (highscores == polled) return LeaderboardDiff.NONE;
+        polled = highscores;
+        LeaderboardDiff.Snapshot current = LeaderboardDiff.Snapshot.of(highscores);
+        LeaderboardDiff diff = LeaderboardDiff.between(snapshot, current);
+        snapshot = current;
+        if (!diff.isEmpty()) {
+            for (LeaderboardListener listener : listeners) {
+                try {
+                    listener.onChange(diff);
+                } catch (RuntimeException exception) {
+                    LOGGER.log(WARNING, "Leaderboard listener failed", exception);
+                }
+            }
+        }
+        return diff;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (IOException exception) {
+            for (LeaderboardListener listener : listeners) {
+                try {
+                    listener.onError(exception);
+                } catch (RuntimeException listenerException) {
+                    LOGGER.log(WARNING, "Leaderboard listener failed", listenerException);
+                }
+            }
+        } catch (RuntimeException exception) {
+            LOGGER.log(WARNING, "Failed to poll leaderboard", exception);
+        } finally {
+            scheduleNextPoll();
+        }
+    }
+
+    private void scheduleNextPoll() {
+        synchronized (scheduleLock) {
+            if (closed) return;
+            nextPoll = ElympicsExecutors.scheduler().schedule(() -> root.getExecutor().execute(this::pollQuietly),
+                    periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops polling.
+     */
+    @Override
+    public void close() {
+        synchronized (scheduleLock) {
+            closed = true;
+            if (nextPoll != null) nextPoll.cancel(false);
+        }
+    }
+
+}
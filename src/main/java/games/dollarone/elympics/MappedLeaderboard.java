@@ -0,0 +1,488 @@
+package games.dollarone.elympics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.RandomAccess;
+
+/**
+ * Read-only leaderboard stored in memory-mapped files rather than on the heap, sorted from best to worst score as
+ * ordered by {@link ElympicsHighscore#compareTo(ElympicsHighscore)}, for leaderboards too large to hold as objects.
+ *
+ * Entries are fixed-width records of a score and the offset of the player's name in a separate name heap file,
+ * {@code <file>.names}. Scores that do not fit in a {@code long} are clamped in the record, with the exact score kept
+ * next to the name. The records are sorted in place in the mapped file, with players with equal scores kept in the
+ * order they were written. Both files are mapped in segments, so they may be larger than 2 GB, and only the pages
+ * being read need to be in memory.
+ *
+ * {@link #get(int)} returns flyweight entries which read their name and score from the files when asked for them.
+ * Missing scores are stored as zero. Closing the leaderboard releases it, though the operating system only unmaps
+ * the files once the mappings are garbage collected.
+ */
+public final class MappedLeaderboard extends AbstractList<ElympicsHighscore> implements RandomAccess, Closeable {
+
+    private static final int MAGIC = 0x454C4D31; // "ELM1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32; // magic, version, size, names length
+    private static final int RECORD_SIZE = 16; // score, name offset
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final File file;
+    private final int size;
+    private MappedByteBuffer[] records;
+    private MappedByteBuffer[] names;
+
+    private MappedLeaderboard(File file, int size, MappedByteBuffer[] records, MappedByteBuffer[] names) {
+        this.file = file;
+        this.size = size;
+        this.records = records;
+        this.names = names;
+    }
+
+    /**
+     * Writes high scores in any order to a new leaderboard, consuming them one at a time so they never need to be
+     * held in memory at the same time. Any existing leaderboard in the file is replaced.
+     *
+     * @param file The file of the records, the names being written to {@code <file>.names}
+     * @param highscores The high scores
+     * @return The leaderboard, which must be closed once no longer used
+     * @throws IOException If the files cannot be written
+     */
+    public static MappedLeaderboard write(File file, Iterator<? extends ElympicsHighscore> highscores)
+            throws IOException {
+        int size = 0;
+        long namesLength = 0;
+        try (DataOutputStream records = output(file); DataOutputStream names = output(namesFile(file))) {
+            records.write(new byte[HEADER_SIZE]); // written once the records are sorted, committing the leaderboard
+            while (highscores.hasNext()) {
+                if (size == Integer.MAX_VALUE) throw new IOException("Too many high scores for " + file);
+                ElympicsHighscore highscore = highscores.next();
+                long score;
+                byte[] overflow = null;
+                if (highscore.hasLongScore()) {
+                    score = highscore.getLongScore();
+                } else {
+                    BigInteger exact = highscore.getScore();
+                    if (exact == null) {
+                        score = 0;
+                    } else if (exact.bitLength() < Long.SIZE) {
+                        score = exact.longValue();
+                    } else {
+                        score = exact.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+                        overflow = exact.toByteArray();
+                    }
+                }
+                records.writeLong(score);
+                records.writeLong(namesLength);
+
+                String name = highscore.getName();
+                if (name == null) {
+                    names.writeInt(-1);
+                    namesLength += 4;
+                } else {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    names.writeInt(bytes.length);
+                    names.write(bytes);
+                    namesLength += 4 + bytes.length;
+                }
+                if (overflow == null) {
+                    names.writeInt(0);
+                    namesLength += 4;
+                } else {
+                    names.writeInt(overflow.length);
+                    names.write(overflow);
+                    namesLength += 4 + overflow.length;
+                }
+                size++;
+            }
+        }
+
+        MappedLeaderboard leaderboard = new MappedLeaderboard(file, size,
+                map(file, FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) size * RECORD_SIZE),
+                map(namesFile(file), FileChannel.MapMode.READ_ONLY, namesLength));
+        leaderboard.sort(0, size, 2 * (32 - Integer.numberOfLeadingZeros(size)));
+        MappedByteBuffer header = leaderboard.records[0];
+        header.putInt(4, VERSION);
+        header.putInt(8, size);
+        header.putLong(16, namesLength);
+        for (MappedByteBuffer segment : leaderboard.records) {
+            segment.force();
+        }
+        header.putInt(0, MAGIC);
+        header.force();
+        return leaderboard;
+    }
+
+    /**
+     * Opens a leaderboard previously {@linkplain #write(File, Iterator) written}.
+     *
+     * @param file The file of the records
+     * @return The leaderboard, which must be closed once no longer used
+     * @throws IOException If the files cannot be read or do not hold a complete leaderboard
+     */
+    public static MappedLeaderboard open(File file) throws IOException {
+        int size;
+        long namesLength;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                throw new IOException("Not a complete leaderboard " + file);
+            }
+            int version = raf.readInt();
+            if (version != VERSION) throw new IOException("Unsupported leaderboard version " + version);
+            size = raf.readInt();
+            raf.readInt();
+            namesLength = raf.readLong();
+            if (size < 0 || raf.length() < HEADER_SIZE + (long) size * RECORD_SIZE
+                    || namesFile(file).length() < namesLength) {
+                throw new IOException("Truncated leaderboard " + file);
+            }
+        }
+        return new MappedLeaderboard(file, size,
+                map(file, FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long) size * RECORD_SIZE),
+                map(namesFile(file), FileChannel.MapMode.READ_ONLY, namesLength));
+    }
+
+    private static File namesFile(File file) {
+        return new File(file.getPath() + ".names");
+    }
+
+    private static DataOutputStream output(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    private static MappedByteBuffer[] map(File file, FileChannel.MapMode mode, long length) throws IOException {
+        int count = (int) Math.max(1, (length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        try (RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = raf.getChannel().map(mode, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Gets the file of the records.
+     *
+     * @return The file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a flyweight entry reading the name and score at the given position from the files. Reading them after the
+     * leaderboard is closed fails.
+     *
+     * @param index The position, 0 being the best score
+     * @return The entry
+     */
+    @Override
+    public ElympicsHighscore get(int index) {
+        checkIndex(index);
+        return new Entry(index);
+    }
+
+    /**
+     * Gets the name of the player at the given position.
+     *
+     * @param index The position, 0 being the best score
+     * @return The name
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        long offset = nameOffset(index);
+        int length = heapInt(offset);
+        if (length == -1) return null;
+        return new String(heapBytes(offset + 4, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether the score at the given position fits in a {@code long}.
+     *
+     * @param index The position, 0 being the best score
+     * @return {@code true} if {@link #getLongScore(int)} returns the exact score
+     */
+    public boolean fitsInLong(int index) {
+        checkIndex(index);
+        return !isClamped(score(index)) || overflowOffset(index) == -1;
+    }
+
+    /**
+     * Gets the score at the given position as a {@code long}, without allocating.
+     *
+     * @param index The position, 0 being the best score
+     * @return The score
+     * @throws ArithmeticException If the score does not {@linkplain #fitsInLong(int) fit} in a {@code long}
+     */
+    public long getLongScore(int index) {
+        if (!fitsInLong(index)) throw new ArithmeticException("Score at " + index + " does not fit in a long");
+        return score(index);
+    }
+
+    /**
+     * Gets the score at the given position.
+     *
+     * @param index The position, 0 being the best score
+     * @return The score
+     */
+    public BigInteger getScore(int index) {
+        checkIndex(index);
+        return exactScore(index);
+    }
+
+    /**
+     * Gets the rank a player with the given score would have, found by binary search: 1 plus the number of entries
+     * with a better score.
+     *
+     * @param score The score
+     * @return The rank, 1 being the best
+     */
+    public int rankOf(long score) {
+        return rankOf(score, null);
+    }
+
+    /**
+     * Gets the rank a player with the given score would have, found by binary search: 1 plus the number of entries
+     * with a better score.
+     *
+     * @param score The score
+     * @return The rank, 1 being the best
+     */
+    public int rankOf(BigInteger score) {
+        if (score.bitLength() < Long.SIZE) return rankOf(score.longValue(), null);
+        return rankOf(score.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE, score);
+    }
+
+    private int rankOf(long clamped, BigInteger exact) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long score = score(middle);
+            int result = Long.compare(score, clamped);
+            if (result == 0 && isClamped(score)) {
+                result = exactScore(middle).compareTo(exact != null ? exact : BigInteger.valueOf(clamped));
+            }
+            if (result > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * Releases the mappings. Entries must not be read afterwards.
+     */
+    @Override
+    public void close() {
+        records = null;
+        names = null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        if (records == null) throw new IllegalStateException("Leaderboard " + file + " is closed");
+    }
+
+    private static boolean isClamped(long score) {
+        return score == Long.MAX_VALUE || score == Long.MIN_VALUE;
+    }
+
+    private long score(int index) {
+        long position = HEADER_SIZE + (long) index * RECORD_SIZE;
+        return records[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    private long nameOffset(int index) {
+        long position = HEADER_SIZE + (long) index * RECORD_SIZE + 8;
+        return records[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Gets the offset in the name heap of the exact score of an entry, or -1 if the record holds the exact score.
+     */
+    private long overflowOffset(int index) {
+        long offset = nameOffset(index);
+        offset += 4 + Math.max(0, heapInt(offset));
+        return heapInt(offset) == 0 ? -1 : offset;
+    }
+
+    private BigInteger exactScore(int index) {
+        long score = score(index);
+        if (isClamped(score)) {
+            long offset = overflowOffset(index);
+            if (offset != -1) return new BigInteger(heapBytes(offset + 4, heapInt(offset)));
+        }
+        return BigInteger.valueOf(score);
+    }
+
+    private byte heapByte(long position) {
+        return names[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private int heapInt(long position) {
+        MappedByteBuffer segment = names[(int) (position >>> SEGMENT_SHIFT)];
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset + 4 <= segment.limit()) return segment.getInt(offset);
+        // straddles two segments
+        return (heapByte(position) & 0xFF) << 24 | (heapByte(position + 1) & 0xFF) << 16
+                | (heapByte(position + 2) & 0xFF) << 8 | (heapByte(position + 3) & 0xFF);
+    }
+
+    private byte[] heapBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        MappedByteBuffer segment = names[(int) (position >>> SEGMENT_SHIFT)];
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset + length <= segment.limit()) {
+            for (int i = 0; i < length; i++) {
+                bytes[i] = segment.get(offset + i);
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                bytes[i] = heapByte(position + i);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Compares two records from best to worst score, then by name offset, which is the order they were written in.
+     */
+    private int compare(int first, int second) {
+        long firstScore = score(first);
+        long secondScore = score(second);
+        int result = Long.compare(secondScore, firstScore);
+        if (result == 0 && isClamped(firstScore)) result = exactScore(second).compareTo(exactScore(first));
+        if (result == 0) result = Long.compare(nameOffset(first), nameOffset(second));
+        return result;
+    }
+
+    private void swap(int first, int second) {
+        long firstScore = score(first);
+        long firstOffset = nameOffset(first);
+        put(first, score(second), nameOffset(second));
+        put(second, firstScore, firstOffset);
+    }
+
+    private void put(int index, long score, long nameOffset) {
+        long position = HEADER_SIZE + (long) index * RECORD_SIZE;
+        // records are aligned, so never straddle two segments
+        MappedByteBuffer segment = records[(int) (position >>> SEGMENT_SHIFT)];
+        int offset = (int) (position & SEGMENT_MASK);
+        segment.putLong(offset, score);
+        segment.putLong(offset + 8, nameOffset);
+    }
+
+    /**
+     * Introsort of the records in place: quicksort, switching to heapsort past the given depth and to insertion sort
+     * for short ranges. Unstable, but the name offsets make every record distinct, keeping ties in written order.
+     */
+    private void sort(int from, int to, int depth) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(from, to);
+                return;
+            }
+            int pivot = partition(from, to);
+            // recurse into the smaller side, so the stack stays logarithmic
+            if (pivot - from < to - pivot) {
+                sort(from, pivot, depth);
+                from = pivot + 1;
+            } else {
+                sort(pivot + 1, to, depth);
+                to = pivot;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(j, j - 1) < 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private int partition(int from, int to) {
+        int last = to - 1;
+        int middle = (from + to) >>> 1;
+        if (compare(middle, from) < 0) swap(middle, from);
+        if (compare(last, from) < 0) swap(last, from);
+        if (compare(last, middle) < 0) swap(last, middle);
+        swap(middle, last); // the median of the three is the pivot
+        int store = from;
+        for (int i = from; i < last; i++) {
+            if (compare(i, last) < 0) swap(i, store++);
+        }
+        swap(store, last);
+        return store;
+    }
+
+    private void heapSort(int from, int to) {
+        int count = to - from;
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(from, i, count);
+        }
+        for (int end = count - 1; end > 0; end--) {
+            swap(from, from + end);
+            siftDown(from, 0, end);
+        }
+    }
+
+    private void siftDown(int from, int node, int count) {
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= count) return;
+            if (child + 1 < count && compare(from + child + 1, from + child) > 0) child++;
+            if (compare(from + child, from + node) <= 0) return;
+            swap(from + node, from + child);
+            node = child;
+        }
+    }
+
+    /**
+     * Entry reading its name and score from the leaderboard's files when asked for them.
+     */
+    private final class Entry extends ElympicsHighscore {
+        private final int index;
+
+        private Entry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getName() {
+            return MappedLeaderboard.this.getName(index);
+        }
+
+        @Override
+        public BigInteger getScore() {
+            return MappedLeaderboard.this.getScore(index);
+        }
+    }
+
+}
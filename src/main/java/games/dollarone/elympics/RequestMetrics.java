@@ -0,0 +1,123 @@
+package games.dollarone.elympics;
+
+/**
+ * Pluggability for instrumenting requests made to Elympics.
+ *
+ * Endpoints are identified by the last segment of the request path, such as {@code /getHighscores}. Implementations
+ * are called from the threads making requests, so they must be thread safe and should return quickly.
+ *
+ * @see InMemoryRequestMetrics
+ */
+public interface RequestMetrics {
+
+    /**
+     * Records a single attempt of a request, including attempts that failed and were retried.
+     *
+     * @param sample The measurements of the attempt
+     */
+    default void recordRequest(RequestSample sample) {
+
+    }
+
+    /**
+     * Records that a failed attempt is about to be retried.
+     *
+     * @param endpoint The endpoint
+     */
+    default void recordRetry(String endpoint) {
+
+    }
+
+    /**
+     * Records that a hedged request was sent because the first one was slow to answer.
+     *
+     * @param endpoint The endpoint
+     * @see HedgePolicy
+     */
+    default void recordHedge(String endpoint) {
+
+    }
+
+    /**
+     * Records that a read was answered from the cache without a request.
+     *
+     * @param endpoint The endpoint
+     */
+    default void recordCacheHit(String endpoint) {
+
+    }
+
+    /**
+     * Records that a read could not be answered from the cache and made a request.
+     *
+     * @param endpoint The endpoint
+     */
+    default void recordCacheMiss(String endpoint) {
+
+    }
+
+    /**
+     * Records that a read waited for an identical request already in flight instead of making one.
+     *
+     * @param endpoint The endpoint
+     */
+    default void recordCoalesced(String endpoint) {
+
+    }
+
+    /**
+     * Implementation that records nothing.
+     */
+    RequestMetrics NONE = new RequestMetrics() {
+    };
+
+    /**
+     * Creates metrics that report everything to both of the given metrics.
+     *
+     * @param first The first metrics
+     * @param second The second metrics
+     * @return The combined metrics
+     */
+    static RequestMetrics combine(RequestMetrics first, RequestMetrics second) {
+        if (first == NONE) return second;
+        if (second == NONE) return first;
+        return new RequestMetrics() {
+            @Override
+            public void recordRequest(RequestSample sample) {
+                first.recordRequest(sample);
+                second.recordRequest(sample);
+            }
+
+            @Override
+            public void recordRetry(String endpoint) {
+                first.recordRetry(endpoint);
+                second.recordRetry(endpoint);
+            }
+
+            @Override
+            public void recordHedge(String endpoint) {
+                first.recordHedge(endpoint);
+                second.recordHedge(endpoint);
+            }
+
+            @Override
+            public void recordCacheHit(String endpoint) {
+                first.recordCacheHit(endpoint);
+                second.recordCacheHit(endpoint);
+            }
+
+            @Override
+            public void recordCacheMiss(String endpoint) {
+                first.recordCacheMiss(endpoint);
+                second.recordCacheMiss(endpoint);
+            }
+
+            @Override
+            public void recordCoalesced(String endpoint) {
+                first.recordCoalesced(endpoint);
+                second.recordCoalesced(endpoint);
+            }
+        };
+    }
+
+}
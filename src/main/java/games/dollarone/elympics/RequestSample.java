@@ -0,0 +1,96 @@
+package games.dollarone.elympics;
+
+/**
+ * Measurements of a single attempt of a request, passed to {@link RequestMetrics}.
+ *
+ * Times are in nanoseconds from the start of the attempt, and are {@code -1} if the attempt failed before reaching
+ * that point. For streamed responses the sample is recorded once the stream is closed.
+ */
+public final class RequestSample {
+
+    private final String endpoint;
+    private final int responseCode;
+    private final long connectNanos;
+    private final long timeToFirstByteNanos;
+    private final long totalNanos;
+    private final long requestBytes;
+    private final long requestWireBytes;
+    private final long responseWireBytes;
+    private final long responseBytes;
+
+    RequestSample(String endpoint, int responseCode, long connectNanos, long timeToFirstByteNanos, long totalNanos,
+                  long requestBytes, long requestWireBytes, long responseWireBytes, long responseBytes) {
+        this.endpoint = endpoint;
+        this.responseCode = responseCode;
+        this.connectNanos = connectNanos;
+        this.timeToFirstByteNanos = timeToFirstByteNanos;
+        this.totalNanos = totalNanos;
+        this.requestBytes = requestBytes;
+        this.requestWireBytes = requestWireBytes;
+        this.responseWireBytes = responseWireBytes;
+        this.responseBytes = responseBytes;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Http response code of the attempt
+     *
+     * @return {@code -1} if no response was received.
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * Time taken to open the connection, which is close to 0 when a kept-alive connection was reused.
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * Time until the response status and headers were received.
+     */
+    public long getTimeToFirstByteNanos() {
+        return timeToFirstByteNanos;
+    }
+
+    /**
+     * Time until the response body was read.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Size of the request body before compression.
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Size of the request body as sent, after compression.
+     */
+    public long getRequestWireBytes() {
+        return requestWireBytes;
+    }
+
+    /**
+     * Size of the response body as received, before decompression.
+     */
+    public long getResponseWireBytes() {
+        return responseWireBytes;
+    }
+
+    /**
+     * Size of the response body after decompression.
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+}
@@ -1,25 +1,27 @@
 package games.dollarone.elympics;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import org.apache.commons.io.IOUtils;
 
 import javax.annotation.WillClose;
 import java.io.*;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
-import java.net.ProtocolException;
 import java.net.URL;
-import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static games.dollarone.elympics.Elympics.MAPPER;
-import static java.util.Arrays.asList;
 import static java.util.logging.Level.FINE;
 
 /**
@@ -27,8 +29,9 @@ import static java.util.logging.Level.FINE;
  */
 public class Requester {
 
-    private static final List<String> METHODS_WITHOUT_BODY = asList("GET", "DELETE");
     private static final Logger LOGGER = Logger.getLogger(Requester.class.getName());
+    private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[32768]);
+    private static final Pattern NEXT_LINK_PATTERN = Pattern.compile(".*<(.*)>; rel=\"next\"");
 
     private final Elympics root;
     private final List<Entry> args = new ArrayList<>();
@@ -40,12 +43,34 @@ public class Requester {
     private String method = "POST";
     private String contentType = "application/x-www-form-urlencoded";
     private InputStream body;
+    private long bodyLength = -1;
 
     /**
      * Current connection.
      */
-    private HttpURLConnection connection;
+    private volatile HttpTransport.Exchange connection;
     private boolean forceBody;
+    private boolean idempotent;
+    private volatile boolean cancelled;
+
+    /**
+     * Retry state of the current request.
+     */
+    private int attempts;
+    private long waitedMillis;
+
+    /**
+     * Measurements of the current attempt, reported to {@link RequestMetrics}.
+     */
+    private String endpoint;
+    private long attemptStartedAt;
+    private long connectNanos;
+    private long firstByteNanos;
+    private long requestBytes;
+    private long requestWireBytes;
+    private CountingInputStream wireStream;
+    private CountingInputStream decodedStream;
+    private boolean attemptRecorded;
 
     private static class Entry {
         String key;
@@ -130,6 +155,16 @@ public class Requester {
         return this;
     }
 
+    /**
+     * Like {@link #with(InputStream)}, but with the length of the body known up front, so it can be streamed to the
+     * server as it is read instead of being buffered to find out its length.
+     */
+    public Requester with(@WillClose/*later*/ InputStream body, long length) {
+        this.body = body;
+        this.bodyLength = length;
+        return this;
+    }
+
     public Requester _with(String key, Object value) {
         if (value!=null) {
             args.add(new Entry(key,value));
@@ -170,6 +205,15 @@ public class Requester {
         return this;
     }
 
+    /**
+     * Marks the request as safe to repeat even though its HTTP verb is not idempotent, such as a POST that only
+     * reads data, so that the {@link RetryPolicy} retries it on server errors and read timeouts.
+     */
+    /*package*/ Requester idempotent() {
+        idempotent = true;
+        return this;
+    }
+
     public void to(String tailApiUrl) throws IOException {
         to(tailApiUrl,null);
     }
@@ -193,47 +237,103 @@ public class Requester {
         return _to(tailApiUrl, null, existingInstance);
     }
 
-    private <T> T _to(String tailApiUrl, Class<T> type, T instance) throws IOException {
+    /**
+     * Sends a request to the specified URL, and lazily parses the JSON array in the response into elements of the
+     * given type as they are read from the connection, following pagination links as the iterator advances.
+     *
+     * The response body is never held in memory in full. The returned iterator must be closed if it is not
+     * exhausted.
+     *
+     * @throws IOException
+     *      if the server returns 4xx/5xx responses to the first request.
+     */
+    public <T> CloseableIterator<T> toIterator(String tailApiUrl, Class<T> elementType) throws IOException {
+        return new JsonArrayIterator<>(elementType, withQueryString(tailApiUrl));
+    }
+
+    private String withQueryString(String tailApiUrl) {
         if (!isMethodWithBody() && !args.isEmpty()) {
             boolean questionMarkFound = tailApiUrl.indexOf('?') != -1;
-            tailApiUrl += questionMarkFound ? '&' : '?';
-            for (Iterator<Entry> it = args.listIterator(); it.hasNext();) {
-                Entry arg = it.next();
-                tailApiUrl += arg.key + '=' + URLEncoder.encode(arg.value.toString(),"UTF-8");
-                if (it.hasNext()) {
-                    tailApiUrl += '&';
-                }
-            }
+            return tailApiUrl + (questionMarkFound ? '&' : '?') + encodeArgs();
         }
+        return tailApiUrl;
+    }
 
-        while (true) {// loop while API rate limit is hit
-            setupConnection(root.getApiURL(tailApiUrl));
+    /**
+     * Encodes the parameters into the calling thread's {@link FormEncoder}.
+     */
+    private FormEncoder encodeArgs() {
+        FormEncoder encoder = FormEncoder.get();
+        for (Entry e : args) {
+            encoder.add(e.key, e.value);
+        }
+        return encoder;
+    }
+
+    /**
+     * Sends a request to the specified URL, and parses each page of the paginated response into an array of the given
+     * type, fetching further pages only as the iterator advances.
+     *
+     * Callers can stop early by closing the iterator, in which case no further pages are requested.
+     *
+     * @param prefetchExecutor If not {@code null}, the next page is fetched on this executor while the caller
+     *                         consumes the current one
+     * @throws IOException
+     *      if the server returns 4xx/5xx responses to the first request.
+     */
+    public <T> CloseableIterator<T[]> toPages(String tailApiUrl, Class<T[]> arrayType, Executor prefetchExecutor)
+            throws IOException {
+        return new PageIterator<>(arrayType, withQueryString(tailApiUrl), prefetchExecutor);
+    }
 
-            buildRequest();
+    private <T> T _to(String tailApiUrl, Class<T> type, T instance) throws IOException {
+        tailApiUrl = withQueryString(tailApiUrl);
+
+        T result = fetch(tailApiUrl, type, instance);
+        if (result == null || type == null || !type.isArray()) return result;
+
+        // we might have to loop for pagination - collect the pages and copy them into the result once
+        String link = nextPageLink();
+        if (link == null) return result;
+        List<T> pages = new ArrayList<>();
+        pages.add(result);
+        int length = Array.getLength(result);
+        while (link != null) {
+            T page = fetch(link, type, instance);
+            if (page == null) break;
+            pages.add(page);
+            length += Array.getLength(page);
+            link = nextPageLink();
+        }
+
+        T concatResult = (T) Array.newInstance(type.getComponentType(), length);
+        int offset = 0;
+        for (T page : pages) {
+            int pageLength = Array.getLength(page);
+            System.arraycopy(page, 0, concatResult, offset, pageLength);
+            offset += pageLength;
+        }
+        return concatResult;
+    }
+
+    /**
+     * Requests a single page from the specified URL and parses it.
+     */
+    private <T> T fetch(String tailApiUrl, Class<T> type, T instance) throws IOException {
+        resetRetries();
+        while (true) {// loop while API rate limit is hit
+            ElympicsRateLimiter.Permit permit = acquirePermit();
+            setupConnection(tailApiUrl, permit);
 
             try {
-                T result = parse(type, instance);
-                if (type != null && type.isArray()) { // we might have to loop for pagination - done through recursion
-                    final String links = connection.getHeaderField("link");
-                    if (links != null && links.contains("rel=\"next\"")) {
-                        Pattern nextLinkPattern = Pattern.compile(".*<(.*)>; rel=\"next\"");
-                        Matcher nextLinkMatcher = nextLinkPattern.matcher(links);
-                        if (nextLinkMatcher.find()) {
-                            final String link = nextLinkMatcher.group(1);
-                            T nextResult = _to(link, type, instance);
-
-                            final int resultLength = Array.getLength(result);
-                            final int nextResultLength = Array.getLength(nextResult);
-                            T concatResult = (T) Array.newInstance(type.getComponentType(), resultLength + nextResultLength);
-                            System.arraycopy(result, 0, concatResult, 0, resultLength);
-                            System.arraycopy(nextResult, 0, concatResult, resultLength, nextResultLength);
-                            result = concatResult;
-                        }
-                    }
-                }
-                return result;
+                buildRequest();
+                return parse(type, instance);
             } catch (IOException e) {
+                permit.close(); // don't hold the permit while waiting to retry
+                recordAttempt();
                 handleApiError(e);
+            } finally {
+                permit.close();
             }
         }
     }
@@ -242,30 +342,53 @@ public class Requester {
      * Makes a request and just obtains the HTTP status code.
      */
     public int asHttpStatusCode(String tailApiUrl) throws IOException {
+        resetRetries();
         while (true) {// loop while API rate limit is hit
             method("GET");
-            setupConnection(root.getApiURL(tailApiUrl));
-
-            buildRequest();
+            ElympicsRateLimiter.Permit permit = acquirePermit();
+            setupConnection(tailApiUrl, permit);
 
             try {
-                return connection.getResponseCode();
+                buildRequest();
+                int responseCode = responseCode();
+                discard(responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
+                recordAttempt();
+                return responseCode;
             } catch (IOException e) {
+                permit.close(); // don't hold the permit while waiting to retry
+                recordAttempt();
                 handleApiError(e);
+            } finally {
+                permit.close();
             }
         }
     }
 
+    /**
+     * Makes a request and returns the response body to be read as it arrives. The request counts towards the
+     * {@link ElympicsRateLimiter} until the stream is closed.
+     */
     public InputStream asStream(String tailApiUrl) throws IOException {
+        resetRetries();
         while (true) {// loop while API rate limit is hit
-            setupConnection(root.getApiURL(tailApiUrl));
-
-            buildRequest();
+            ElympicsRateLimiter.Permit permit = acquirePermit();
+            setupConnection(tailApiUrl, permit);
 
+            boolean streaming = false;
             try {
-                return wrapStream(connection.getInputStream());
+                buildRequest();
+                responseCode();
+                InputStream in = wrapStream(connection.getInputStream());
+                if (in == null || permit == ElympicsRateLimiter.Permit.NONE) return in;
+                in = new PermitInputStream(in, permit);
+                streaming = true;
+                return in;
             } catch (IOException e) {
+                permit.close(); // don't hold the permit while waiting to retry
+                recordAttempt();
                 handleApiError(e);
+            } finally {
+                if (!streaming) permit.close();
             }
         }
     }
@@ -274,29 +397,74 @@ public class Requester {
         return connection.getHeaderField(header);
     }
 
+    /**
+     * Gets the URL of the next page from the "Link" header of the current response.
+     *
+     * @return The URL of the next page, or {@code null} if this is the last page
+     */
+    private String nextPageLink() {
+        final String links = connection.getHeaderField("link");
+        if (links == null || !links.contains("rel=\"next\"")) return null;
+        Matcher nextLinkMatcher = NEXT_LINK_PATTERN.matcher(links);
+        return nextLinkMatcher.find() ? nextLinkMatcher.group(1) : null;
+    }
+
 
     /**
      * Set up the request parameters or POST payload.
      */
     private void buildRequest() throws IOException {
-        if (isMethodWithBody()) {
-            connection.setDoOutput(true);
+        if (cancelled) throw new InterruptedIOException("Request cancelled");
+        boolean withBody = isMethodWithBody();
+        FormEncoder form = null;
+        byte[] compressedForm = null;
+        boolean compress = false;
+        if (withBody) {
             connection.setRequestProperty("Content-type", contentType);
-
+            int threshold = root.getRequestCompressionThreshold();
             if (body == null) {
-                StringBuilder requestBuilder = new StringBuilder();
-                for (Entry e : args) {
-                    requestBuilder.append(e.key).append('=').append(e.value).append('&');
+                form = encodeArgs();
+                if (threshold >= 0 && form.size() >= threshold) {
+                    compressedForm = form.gzip();
+                    compress = true;
+                }
+                // the length is known up front, so the body can be sent without being copied
+                connection.setBodyLength(compressedForm != null ? compressedForm.length : form.size(), 0);
+            } else {
+                compress = threshold >= 0 && (bodyLength < 0 || bodyLength >= threshold);
+                connection.setBodyLength(compress ? -1 : bodyLength, root.getChunkSize());
+            }
+            if (compress) {
+                connection.setRequestProperty("Content-Encoding", "gzip");
+            }
+        }
+
+        connection.connect();
+        connectNanos = System.nanoTime() - attemptStartedAt;
+
+        if (withBody) {
+            if (form != null) {
+                requestBytes = form.size();
+                if (compressedForm != null) {
+                    connection.getOutputStream().write(compressedForm);
+                    requestWireBytes = compressedForm.length;
+                } else {
+                    form.writeTo(connection.getOutputStream());
+                    requestWireBytes = requestBytes;
                 }
-                requestBuilder.deleteCharAt(requestBuilder.length() - 1);
-                connection.getOutputStream().write(requestBuilder.toString().getBytes("UTF-8"));
             } else {
                 try {
-                    byte[] bytes = new byte[32768];
+                    CountingOutputStream wire = new CountingOutputStream(connection.getOutputStream());
+                    OutputStream out = compress ? new GZIPOutputStream(wire, 8192) : wire;
+                    byte[] bytes = COPY_BUFFERS.get();
                     int read = 0;
                     while ((read = body.read(bytes)) != -1) {
-                        connection.getOutputStream().write(bytes, 0, read);
+                        out.write(bytes, 0, read);
+                        requestBytes += read;
                     }
+                    if (compress) ((GZIPOutputStream) out).finish();
+                    wire.close();
+                    requestWireBytes = wire.getCount();
                 } finally {
                     body.close();
                 }
@@ -304,12 +472,30 @@ public class Requester {
         }
     }
 
+    private boolean isIdempotent() {
+        return idempotent || !"POST".equals(method) && !"PATCH".equals(method);
+    }
+
     private boolean isMethodWithBody() {
-        return forceBody || !METHODS_WITHOUT_BODY.contains(method);
+        return forceBody || !"GET".equals(method) && !"DELETE".equals(method);
+    }
+
+    /**
+     * Sets up the connection for an attempt holding the permit, giving the permit back if that fails, as the attempt
+     * that would otherwise release it never starts.
+     */
+    private void setupConnection(String tailApiUrl, ElympicsRateLimiter.Permit permit) throws IOException {
+        try {
+            setupConnection(root.getApiURL(tailApiUrl));
+        } catch (Throwable e) {
+            permit.close();
+            throw e;
+        }
     }
 
     private void setupConnection(URL url) throws IOException {
-        connection = root.getConnector().connect(url);
+        startAttempt(url);
+        connection = root.getTransport().open(url, method);
 
         // if the authentication is needed but no credential is given, try it anyway (so that some calls
         // that do work with anonymous access in the reduced form should still work.)
@@ -322,53 +508,23 @@ public class Requester {
                 connection.setRequestProperty(e.getKey(), v);
         }
 
-        setRequestMethod(connection);
         connection.setRequestProperty("Accept-Encoding", "gzip");
     }
 
-    private void setRequestMethod(HttpURLConnection connection) throws IOException {
-        try {
-            connection.setRequestMethod(method);
-        } catch (ProtocolException e) {
-            // JDK only allows one of the fixed set of verbs. Try to override that
-            try {
-                Field $method = HttpURLConnection.class.getDeclaredField("method");
-                $method.setAccessible(true);
-                $method.set(connection,method);
-            } catch (Exception x) {
-                throw new IOException("Failed to set the custom verb", x);
-            }
-            // sun.net.www.protocol.https.DelegatingHttpsURLConnection delegates to another HttpURLConnection
-            try {
-                Field $delegate = connection.getClass().getDeclaredField("delegate");
-                $delegate.setAccessible(true);
-                Object delegate = $delegate.get(connection);
-                if (delegate instanceof HttpURLConnection) {
-                    HttpURLConnection nested = (HttpURLConnection) delegate;
-                    setRequestMethod(nested);
-                }
-            } catch (NoSuchFieldException x) {
-                // no problem
-            } catch (IllegalAccessException x) {
-                throw new IOException("Failed to set the custom verb", x);
-            }
-        }
-        if (!connection.getRequestMethod().equals(method))
-            throw new IllegalStateException("Failed to set the request method to "+method);
-    }
-
     private <T> T parse(Class<T> type, T instance) throws IOException {
         InputStreamReader r = null;
         int responseCode = -1;
         String responseMessage = null;
         try {
-            responseCode = connection.getResponseCode();
+            responseCode = responseCode();
             responseMessage = connection.getResponseMessage();
             if (responseCode == 304) {
+                discard(connection.getInputStream());
                 return null;    // special case handling for 304 unmodified, as the content will be ""
             }
             if (responseCode == 204 && type!=null && type.isArray()) {
                 // no content
+                discard(connection.getInputStream());
                 return type.cast(Array.newInstance(type.getComponentType(),0));
             }
 
@@ -376,7 +532,7 @@ public class Requester {
             String data = IOUtils.toString(r);
             if (type!=null)
                 try {
-                    return MAPPER.readValue(data,type);
+                    return Elympics.reader(type).readValue(data);
                 } catch (JsonMappingException e) {
                     throw new IOException("Failed to deserialize " + data, e);
                 }
@@ -391,6 +547,27 @@ public class Requester {
             throw new HttpException(responseCode, responseMessage, connection.getURL(), e);
         } finally {
             IOUtils.closeQuietly(r);
+            recordAttempt();
+        }
+    }
+
+    /**
+     * Reads and closes whatever is left of a response body. {@link HttpURLConnection} only returns the underlying
+     * socket to the JDK keep-alive cache once the body has been consumed, and {@code java.net.http.HttpClient} only
+     * frees the connection or stream, so this lets later requests to the same host, from any {@link Elympics}
+     * instance, reuse the connection instead of paying for a new TLS handshake.
+     */
+    private static void discard(InputStream in) {
+        if (in == null) return;
+        try {
+            byte[] buffer = new byte[512];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException e) {
+            // the connection won't be reused, which is harmless
+        } finally {
+            IOUtils.closeQuietly(in);
         }
     }
 
@@ -398,17 +575,331 @@ public class Requester {
      * Handles the "Content-Encoding" header.
      */
     private InputStream wrapStream(InputStream in) throws IOException {
-        String encoding = connection.getContentEncoding();
-        if (encoding==null || in==null) return in;
-        if (encoding.equals("gzip"))    return new GZIPInputStream(in);
+        String encoding = connection.getHeaderField("Content-Encoding");
+        if (in==null) return in;
+        if (encoding==null) {
+            wireStream = decodedStream = new CountingInputStream(in, this::recordAttempt);
+            return decodedStream;
+        }
+        if (encoding.equals("gzip")) {
+            wireStream = new CountingInputStream(in);
+            decodedStream = new CountingInputStream(new GZIPInputStream(wireStream), this::recordAttempt);
+            return decodedStream;
+        }
 
         throw new UnsupportedOperationException("Unexpected Content-Encoding: "+encoding);
     }
 
+    /**
+     * Gets the response code, noting when the response started arriving.
+     */
+    private int responseCode() throws IOException {
+        int responseCode = connection.getResponseCode();
+        if (firstByteNanos < 0) firstByteNanos = System.nanoTime() - attemptStartedAt;
+        return responseCode;
+    }
+
+    private void startAttempt(URL url) {
+        String path = url.getPath();
+        endpoint = path.substring(Math.max(0, path.lastIndexOf('/')));
+        attemptStartedAt = System.nanoTime();
+        connectNanos = -1;
+        firstByteNanos = -1;
+        requestBytes = 0;
+        requestWireBytes = 0;
+        wireStream = null;
+        decodedStream = null;
+        attemptRecorded = false;
+    }
+
+    /**
+     * Reports the current attempt to the {@link RequestMetrics}, unless it has already been reported.
+     */
+    private void recordAttempt() {
+        if (attemptRecorded) return;
+        attemptRecorded = true;
+        RequestMetrics metrics = root.getMetrics();
+        if (metrics == RequestMetrics.NONE) return;
+        int responseCode = -1;
+        if (firstByteNanos >= 0) {
+            try {
+                responseCode = connection.getResponseCode();
+            } catch (IOException e) {
+                // no response
+            }
+        }
+        metrics.recordRequest(new RequestSample(endpoint, responseCode, connectNanos, firstByteNanos,
+                System.nanoTime() - attemptStartedAt, requestBytes, requestWireBytes,
+                wireStream != null ? wireStream.getCount() : 0,
+                decodedStream != null ? decodedStream.getCount() : 0));
+    }
+
+    /**
+     * Waits for the {@link ElympicsRateLimiter} to allow a request, if there is one.
+     */
+    private ElympicsRateLimiter.Permit acquirePermit() throws IOException {
+        ElympicsRateLimiter limiter = root.getRateLimiter();
+        if (limiter == null) return ElympicsRateLimiter.Permit.NONE;
+        try {
+            return limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+        }
+    }
+
+    private void resetRetries() {
+        attempts = 1;
+        waitedMillis = 0;
+    }
+
+    /**
+     * Waits before retrying the request if the {@link RetryPolicy} allows it.
+     *
+     * @return {@code true} if the request should be retried
+     */
+    private boolean retry(int responseCode, String retryAfter, IOException e) throws IOException {
+        if (body != null) return false; // the body stream has been consumed and cannot be sent again
+        RetryPolicy policy = root.getRetryPolicy();
+        if (!policy.isRetryable(responseCode, retryAfter, e, isIdempotent())) return false;
+        long delay = policy.delayMillis(attempts, retryAfter);
+        if (!policy.allowsAttempt(attempts, waitedMillis, delay)) return false;
+        if (responseCode != -1) discard(connection.getErrorStream());
+        if (LOGGER.isLoggable(FINE))
+            LOGGER.log(FINE, "Retrying '" + connection.getURL() + "' in " + delay + "ms after attempt " + attempts +
+                    " failed with " + e);
+        try {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + delay;
+                for (long remaining = delay; remaining > 0 && !cancelled;
+                     remaining = deadline - System.currentTimeMillis()) {
+                    wait(remaining);
+                }
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while waiting to retry").initCause(e);
+        }
+        attempts++;
+        waitedMillis += delay;
+        root.getMetrics().recordRetry(endpoint);
+        return true;
+    }
+
+    /**
+     * Aborts the request from another thread, closing its connection. The thread making the request fails with an
+     * {@link IOException} instead of retrying.
+     */
+    void cancel() {
+        cancelled = true;
+        HttpTransport.Exchange current = connection;
+        if (current != null) current.disconnect();
+        synchronized (this) {
+            notifyAll(); // wake up a pending retry
+        }
+    }
+
+    /**
+     * A response body holding an {@link ElympicsRateLimiter} permit until it is closed.
+     */
+    private static final class PermitInputStream extends FilterInputStream {
+        private final ElympicsRateLimiter.Permit permit;
+
+        private PermitInputStream(InputStream in, ElympicsRateLimiter.Permit permit) {
+            super(in);
+            this.permit = permit;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * Iterates over a JSON array read incrementally from the response stream, one page at a time.
+     */
+    private final class JsonArrayIterator<T> implements CloseableIterator<T> {
+        private final Class<T> type;
+        private JsonParser parser;
+        private T next;
+        private boolean closed;
+
+        private JsonArrayIterator(Class<T> type, String tailApiUrl) throws IOException {
+            this.type = type;
+            open(tailApiUrl);
+        }
+
+        private void open(String tailApiUrl) throws IOException {
+            parser = MAPPER.getFactory().createParser(asStream(tailApiUrl));
+            JsonToken token;
+            try {
+                token = parser.nextToken();
+            } catch (IOException e) {
+                // closing the parser closes the response, which gives back its rate limiter permit
+                parser.close();
+                parser = null;
+                throw e;
+            }
+            if (token == null) { // no content
+                parser.close();
+                parser = null;
+            } else if (token != JsonToken.START_ARRAY) {
+                parser.close();
+                throw new IOException("Expected a JSON array from " + connection.getURL() + " but got " + token);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (closed) return false;
+                    if (parser == null) {
+                        String link = nextPageLink();
+                        if (link == null) {
+                            closed = true;
+                            return false;
+                        }
+                        open(link);
+                        continue;
+                    }
+                    JsonToken token = parser.nextToken();
+                    if (token == null || token == JsonToken.END_ARRAY) {
+                        parser.close();
+                        parser = null;
+                    } else {
+                        next = Elympics.reader(type).readValue(parser);
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                try {
+                    close();
+                } catch (IOException e2) {
+                    e.addSuppressed(e2);
+                }
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            next = null;
+            if (parser != null) {
+                JsonParser current = parser;
+                parser = null;
+                current.close();
+            }
+        }
+    }
+
+    /**
+     * Iterates over the pages of a paginated response, optionally fetching the next page in the background.
+     *
+     * At most one page is requested at a time, so the connection state of the requester is never shared.
+     */
+    private final class PageIterator<T> implements CloseableIterator<T[]> {
+        private final Class<T[]> type;
+        private final Executor prefetchExecutor;
+        private String nextLink;
+        private CompletableFuture<T[]> prefetched;
+        private T[] next;
+        private boolean closed;
+
+        private PageIterator(Class<T[]> type, String tailApiUrl, Executor prefetchExecutor) throws IOException {
+            this.type = type;
+            this.prefetchExecutor = prefetchExecutor;
+            next = fetchPage(tailApiUrl);
+            prefetch();
+        }
+
+        private T[] fetchPage(String tailApiUrl) throws IOException {
+            T[] page = fetch(tailApiUrl, type, null);
+            nextLink = page != null ? nextPageLink() : null;
+            return page;
+        }
+
+        private void prefetch() {
+            if (prefetchExecutor == null || nextLink == null || closed) return;
+            final String link = nextLink;
+            nextLink = null;
+            prefetched = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetchPage(link);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, prefetchExecutor);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            if (closed) return false;
+            try {
+                if (prefetched != null) {
+                    CompletableFuture<T[]> page = prefetched;
+                    prefetched = null;
+                    next = page.join();
+                } else if (nextLink != null) {
+                    String link = nextLink;
+                    nextLink = null;
+                    next = fetchPage(link);
+                }
+            } catch (CompletionException e) {
+                closed = true;
+                if (e.getCause() instanceof IOException) throw new UncheckedIOException((IOException) e.getCause());
+                throw e;
+            } catch (IOException e) {
+                closed = true;
+                throw new UncheckedIOException(e);
+            }
+            if (next == null) {
+                closed = true;
+                return false;
+            }
+            prefetch();
+            return true;
+        }
+
+        @Override
+        public T[] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T[] result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            next = null;
+            if (prefetched != null) {
+                prefetched.cancel(false);
+                prefetched = null;
+            }
+        }
+    }
+
     /**
      * Handle API error by either throwing it or by returning normally to retry.
      */
     void handleApiError(IOException e) throws IOException {
+        if (cancelled) throw e; // the connection was closed under the request, there is no response to look at
         int responseCode;
         try {
             responseCode = connection.getResponseCode();
@@ -418,14 +909,14 @@ public class Requester {
             if (LOGGER.isLoggable(FINE))
                 LOGGER.log(FINE, "Silently ignore exception retrieving response code for '" + connection.getURL() + "'" +
                         " handling exception " + e, e);
+            if (retry(-1, null, e2)) return;
             throw e;
         }
         if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) // 401 / Unauthorized == bad creds
             throw e;
 
         // Retry-After is not documented but apparently that field exists
-        if (responseCode == HttpURLConnection.HTTP_FORBIDDEN &&
-                connection.getHeaderField("Retry-After") != null) {
+        if (retry(responseCode, connection.getHeaderField("Retry-After"), e)) {
             return;
         }
 
@@ -0,0 +1,136 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether and when a failed request is retried.
+ *
+ * Requests are retried when they are rate limited (429, or 403 with a {@code Retry-After} header) or could not
+ * connect, and additionally on 5xx responses, read timeouts and dropped connections if the request is idempotent.
+ * The delay before each retry grows exponentially from the initial backoff up to the maximum backoff, with random
+ * jitter so that clients rate limited at the same time do not retry in lockstep, and is never shorter than the
+ * server's {@code Retry-After}. A request is no longer retried once it has made the maximum number of attempts, or
+ * if waiting for the next attempt would exceed the retry budget.
+ */
+public final class RetryPolicy {
+
+    /**
+     * Default policy: up to 5 attempts, backing off from 500 milliseconds to 30 seconds, within a minute.
+     */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, 500, 30000, 60000, TimeUnit.MILLISECONDS);
+
+    /**
+     * Policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0, TimeUnit.MILLISECONDS);
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long retryBudgetMillis;
+
+    /**
+     * @param maxAttempts The maximum number of attempts, including the first one
+     * @param initialBackoff The delay before the first retry, doubled for every further retry
+     * @param maxBackoff The longest delay between attempts, unless the server asks for a longer one
+     * @param retryBudget The longest total time spent waiting between attempts
+     * @param unit The unit of {@code initialBackoff}, {@code maxBackoff} and {@code retryBudget}
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, long retryBudget, TimeUnit unit) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("Max attempts must be at least 1");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = unit.toMillis(initialBackoff);
+        this.maxBackoffMillis = unit.toMillis(maxBackoff);
+        this.retryBudgetMillis = unit.toMillis(retryBudget);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Checks whether a failure may be retried at all.
+     *
+     * @param responseCode The HTTP response code, or {@code -1} if no response was received
+     * @param retryAfter The {@code Retry-After} header of the response, or {@code null}
+     * @param exception The failure
+     * @param idempotent Whether the request can safely be repeated
+     * @return {@code true} if the failure may be retried
+     */
+    boolean isRetryable(int responseCode, String retryAfter, IOException exception, boolean idempotent) {
+        if (responseCode == -1) {
+            if (exception instanceof ConnectException || exception instanceof NoRouteToHostException
+                    || exception instanceof UnknownHostException) {
+                return true;
+            }
+            // a dropped connection may have been processed, so only idempotent requests are sent again
+            return idempotent && (exception instanceof SocketTimeoutException || exception instanceof SocketException);
+        }
+        if (responseCode == HTTP_TOO_MANY_REQUESTS) return true;
+        if (responseCode == HttpURLConnection.HTTP_FORBIDDEN) return retryAfter != null;
+        return idempotent && responseCode >= 500;
+    }
+
+    /**
+     * Gets the delay before the given retry.
+     *
+     * @param retry The number of the retry, starting at 1
+     * @param retryAfter The {@code Retry-After} header of the response, or {@code null}
+     * @return The delay in milliseconds
+     */
+    long delayMillis(int retry, String retryAfter) {
+        long backoff = initialBackoffMillis;
+        for (int i = 1; i < retry && backoff < maxBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoffMillis);
+        long jittered = backoff / 2 + (backoff > 1 ? ThreadLocalRandom.current().nextLong(backoff / 2 + 1) : 0);
+        return Math.max(jittered, parseRetryAfterMillis(retryAfter));
+    }
+
+    /**
+     * Checks whether another attempt fits within the limits of this policy.
+     *
+     * @param attempts The number of attempts made so far
+     * @param waitedMillis The time already spent waiting between attempts
+     * @param delayMillis The delay before the next attempt
+     * @return {@code true} if the next attempt may be made
+     */
+    boolean allowsAttempt(int attempts, long waitedMillis, long delayMillis) {
+        return attempts < maxAttempts && waitedMillis + delayMillis <= retryBudgetMillis;
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, which is either a number of seconds or an HTTP date.
+     *
+     * @return The delay it asks for in milliseconds, or 0 if there is none or it cannot be parsed
+     */
+    static long parseRetryAfterMillis(String retryAfter) {
+        if (retryAfter == null) return 0;
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            try {
+                long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, date - System.currentTimeMillis());
+            } catch (DateTimeParseException e2) {
+                return 0;
+            }
+        }
+    }
+
+}
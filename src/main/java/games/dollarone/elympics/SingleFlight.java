@@ -0,0 +1,60 @@
+package games.dollarone.elympics;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces concurrent identical calls, so that callers arriving while a call is in flight wait for its result
+ * instead of making the same call again. Once the call completes, the next caller starts a new one.
+ *
+ * @param <K> The type of the keys identifying identical calls
+ * @param <V> The type of the results
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the call, or waits for the identical call in flight.
+     *
+     * @param key The key identifying the call
+     * @param call The call, only made if no identical call is in flight
+     * @param joined Run before waiting for an identical call in flight, instead of making the call
+     * @return The result of the call, which is shared by every caller that waited for it
+     * @throws IOException If the call failed
+     */
+    V execute(K key, IOSupplier<V> call, Runnable joined) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            joined.run();
+            return join(existing);
+        }
+        try {
+            V result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> flight) throws IOException {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause; // shared by every waiting caller
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,361 @@
+package games.dollarone.elympics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of high score submissions, so that submissions made while Elympics cannot be
+ * reached are not lost.
+ *
+ * Each submission is recorded before it is sent and marked as acknowledged once the server accepted it. Submissions
+ * left unacknowledged, whether the request failed or the process stopped, are replayed by
+ * {@link Elympics#replayJournal()}. Acknowledged records are dropped when the journal is compacted.
+ *
+ * Each record is written with a checksum and its length last, so a record torn by a crash is ignored when the journal
+ * is opened again.
+ */
+public final class SubmissionJournal implements Closeable {
+
+    /**
+     * When changes to the journal are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /**
+         * After every change, so no acknowledged write is lost even if the machine fails, at the cost of a disk
+         * flush per submission.
+         */
+        ALWAYS,
+        /**
+         * Once a second, so a machine failure may lose the last second of submissions.
+         */
+        PERIODIC,
+        /**
+         * When the operating system decides to, which survives the process crashing but not the machine failing.
+         */
+        NEVER
+    }
+
+    /**
+     * A submission recorded in the journal that has not been acknowledged.
+     */
+    static final class Entry {
+        final long id;
+        final String name;
+        final BigInteger score;
+
+        private Entry(long id, String name, BigInteger score) {
+            this.id = id;
+            this.name = name;
+            this.score = score;
+        }
+    }
+
+    private static final int MAGIC = 0x454C4A31; // "ELJ1"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 9; // length, status, checksum
+    private static final byte PENDING = 1;
+    private static final byte ACKNOWLEDGED = 2;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MIN_COMPACTION_BYTES = 64 * 1024;
+
+    private final File file;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledFuture<?> periodicFlush;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final CRC32 crc = new CRC32();
+
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long acknowledgedBytes;
+    private long nextId;
+    private boolean dirty;
+
+    /**
+     * Offsets of the unacknowledged records by id, in the order they were recorded.
+     */
+    private final Map<Long, Integer> offsets = new LinkedHashMap<>();
+    /**
+     * Ids of the unacknowledged records currently being sent, which must not be replayed.
+     */
+    private final Set<Long> inFlight = new HashSet<>();
+
+    /**
+     * @param executor The executor periodic flushes run on, as forcing changes to disk blocks
+     */
+    SubmissionJournal(File file, FsyncPolicy fsyncPolicy, Executor executor) throws IOException {
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        open();
+        if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+            periodicFlush = ElympicsExecutors.scheduler().scheduleWithFixedDelay(() -> {
+                // at most one flush queued, however long the disk takes
+                if (flushQueued.compareAndSet(false, true)) {
+                    executor.execute(() -> {
+                        flushQueued.set(false);
+                        flush();
+                    });
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+        } else {
+            periodicFlush = null;
+        }
+    }
+
+    private void open() throws IOException {
+        RandomAccessFile opened = new RandomAccessFile(file, "rw");
+        try {
+            int capacity = (int) Math.max(INITIAL_CAPACITY, Math.min(Integer.MAX_VALUE, opened.length()));
+            load(opened, opened.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Switches to the given file and mapping, reading the records in it.
+     */
+    private void load(RandomAccessFile raf, MappedByteBuffer buffer) {
+        this.raf = raf;
+        this.buffer = buffer;
+        int capacity = buffer.capacity();
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 1);
+        }
+        offsets.clear();
+        acknowledgedBytes = 0;
+        position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > capacity) break;
+            if (checksum(position + RECORD_HEADER_SIZE, length) != buffer.getInt(position + 5)) break; // torn write
+            long id = buffer.getLong(position + RECORD_HEADER_SIZE);
+            nextId = Math.max(nextId, id + 1);
+            if (buffer.get(position + 4) == PENDING) {
+                offsets.put(id, position);
+            } else {
+                acknowledgedBytes += RECORD_HEADER_SIZE + length;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        // clear anything after the last valid record, such as the remains of a torn write
+        if (position + 4 <= capacity && buffer.getInt(position) != 0) {
+            for (int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Records a submission that is about to be sent.
+     *
+     * @return The id of the record, to {@linkplain #acknowledge(long) acknowledge} or {@linkplain #release(long)
+     * release} it once the request completes
+     */
+    synchronized long append(String name, BigInteger score) throws IOException {
+        byte[] nameBytes = name != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] scoreBytes = score != null ? score.toByteArray() : null;
+        int length = 8 + 4 + (nameBytes != null ? nameBytes.length : 0) + 4 + (scoreBytes != null ? scoreBytes.length : 0);
+        ensureCapacity(RECORD_HEADER_SIZE + length);
+
+        long id = nextId++;
+        int offset = position;
+        int payload = offset + RECORD_HEADER_SIZE;
+        buffer.position(payload);
+        buffer.putLong(id);
+        putBytes(nameBytes);
+        putBytes(scoreBytes);
+        buffer.put(offset + 4, PENDING);
+        buffer.putInt(offset + 5, checksum(payload, length));
+        buffer.putInt(offset, length); // written last, committing the record
+        position = payload + length;
+
+        offsets.put(id, offset);
+        inFlight.add(id);
+        changed();
+        return id;
+    }
+
+    /**
+     * Marks a submission as accepted by the server, so it is never replayed.
+     */
+    synchronized void acknowledge(long id) {
+        inFlight.remove(id);
+        Integer offset = offsets.remove(id);
+        if (offset == null) return;
+        buffer.put(offset + 4, ACKNOWLEDGED);
+        acknowledgedBytes += RECORD_HEADER_SIZE + buffer.getInt(offset);
+        changed();
+        if (acknowledgedBytes >= MIN_COMPACTION_BYTES && acknowledgedBytes * 2 >= position) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // compaction is retried after the next acknowledgement
+            }
+        }
+    }
+
+    /**
+     * Marks a submission that failed to send as available for replay.
+     */
+    synchronized void release(long id) {
+        inFlight.remove(id);
+    }
+
+    /**
+     * Claims up to the given number of unacknowledged submissions which are not being sent, for replaying. Each must
+     * then be {@linkplain #acknowledge(long) acknowledged} or {@linkplain #release(long) released}.
+     */
+    synchronized List<Entry> claim(int max) {
+        List<Entry> entries = new ArrayList<>(Math.min(max, offsets.size()));
+        for (Map.Entry<Long, Integer> record : offsets.entrySet()) {
+            if (entries.size() >= max) break;
+            if (inFlight.contains(record.getKey())) continue;
+            entries.add(read(record.getValue()));
+            inFlight.add(record.getKey());
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the number of submissions that have not been acknowledged.
+     *
+     * @return The number of pending submissions
+     */
+    public synchronized int getPendingCount() {
+        return offsets.size();
+    }
+
+    /**
+     * Rewrites the journal with only the unacknowledged submissions.
+     *
+     * @throws IOException If the journal could not be rewritten, in which case it is left unchanged
+     */
+    public synchronized void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".compact");
+        int size = HEADER_SIZE;
+        for (Integer offset : offsets.values()) {
+            size += RECORD_HEADER_SIZE + buffer.getInt(offset);
+        }
+        RandomAccessFile out = new RandomAccessFile(compacted, "rw");
+        MappedByteBuffer target;
+        try {
+            out.setLength(0);
+            target = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, size * 2L));
+            target.putInt(MAGIC);
+            target.putInt(1);
+            for (Integer offset : offsets.values()) {
+                int recordSize = RECORD_HEADER_SIZE + buffer.getInt(offset);
+                for (int i = 0; i < recordSize; i++) {
+                    target.put(buffer.get(offset + i));
+                }
+            }
+            target.force();
+            // the handle stays valid across the move, so once moved nothing is left that can fail
+            Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // keep using the current journal
+            out.close();
+            Files.deleteIfExists(compacted.toPath());
+            throw e;
+        }
+        RandomAccessFile previous = raf;
+        load(out, target);
+        try {
+            previous.close();
+        } catch (IOException e) {
+            // the records were already moved to the compacted journal
+        }
+    }
+
+    /**
+     * Forces pending changes to disk.
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (periodicFlush != null) periodicFlush.cancel(false);
+        if (fsyncPolicy != FsyncPolicy.NEVER) flush();
+        raf.close();
+    }
+
+    private void changed() {
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) flush();
+    }
+
+    private Entry read(int offset) {
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        long id = buffer.getLong();
+        byte[] nameBytes = getBytes();
+        byte[] scoreBytes = getBytes();
+        return new Entry(id,
+                nameBytes != null ? new String(nameBytes, StandardCharsets.UTF_8) : null,
+                scoreBytes != null ? new BigInteger(scoreBytes) : null);
+    }
+
+    private void putBytes(byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private byte[] getBytes() {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private int checksum(int offset, int length) {
+        crc.reset();
+        for (int i = 0; i < length; i++) {
+            crc.update(buffer.get(offset + i));
+        }
+        return (int) crc.getValue();
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+        if (position + size <= buffer.capacity()) return;
+        long capacity = buffer.capacity();
+        while (position + size > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) throw new IOException("Submission journal is full: " + file);
+        buffer.force();
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+}
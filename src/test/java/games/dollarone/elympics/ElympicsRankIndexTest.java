@@ -0,0 +1,96 @@
+package games.dollarone.elympics;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ElympicsRankIndexTest {
+
+    @Test
+    public void ranksFromBestToWorst() {
+        ElympicsRankIndex index = ElympicsRankIndex.of(highscores("b", 20, "a", 30, "c", 10));
+        assertEquals(3, index.size());
+        assertEquals(1, index.rankOf("a"));
+        assertEquals(2, index.rankOf("b"));
+        assertEquals(3, index.rankOf("c"));
+        assertEquals(-1, index.rankOf("d"));
+        assertEquals("a", index.atRank(1).getName());
+        assertEquals(BigInteger.TEN, index.scoreAtRank(3));
+    }
+
+    @Test
+    public void keepsTheBestScoreOfEachPlayer() {
+        ElympicsRankIndex index = ElympicsRankIndex.of(highscores("a", 10, "b", 20));
+        assertFalse(index.record(new ElympicsHighscore("a", 5L)));
+        assertEquals(2, index.rankOf("a"));
+        assertTrue(index.record(new ElympicsHighscore("a", 30L)));
+        assertEquals(1, index.rankOf("a"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void ranksEqualScoresInTheOrderTheyWereAdded() {
+        ElympicsRankIndex index = ElympicsRankIndex.of(highscores("x", 5, "y", 5, "z", 5));
+        assertEquals(1, index.rankOf("x"));
+        assertEquals(2, index.rankOf("y"));
+        assertEquals(3, index.rankOf("z"));
+    }
+
+    @Test
+    public void topAndAround() {
+        ElympicsRankIndex index = ElympicsRankIndex.of(highscores("a", 50, "b", 40, "c", 30, "d", 20, "e", 10));
+        assertEquals(names("a", "b"), namesOf(index.top(2)));
+        assertEquals(names("a", "b", "c", "d", "e"), namesOf(index.top(10)));
+        assertEquals(names("b", "c", "d"), namesOf(index.around("c", 1)));
+        assertEquals(names("a", "b"), namesOf(index.around("a", 1)));
+        assertTrue(index.around("f", 1).isEmpty());
+    }
+
+    @Test
+    public void matchesASortedList() {
+        Random random = new Random(42);
+        List<ElympicsHighscore> highscores = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            highscores.add(new ElympicsHighscore("player" + i, (long) random.nextInt(100)));
+        }
+        ElympicsRankIndex index = ElympicsRankIndex.of(highscores);
+        List<ElympicsHighscore> sorted = new ArrayList<>(highscores);
+        Collections.sort(sorted); // stable, so equal scores stay in the order they were added
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i + 1, index.rankOf(sorted.get(i).getName()));
+            assertEquals(sorted.get(i).getName(), index.atRank(i + 1).getName());
+        }
+    }
+
+    static List<ElympicsHighscore> highscores(Object... namesAndScores) {
+        List<ElympicsHighscore> highscores = new ArrayList<>();
+        for (int i = 0; i < namesAndScores.length; i += 2) {
+            long score = (Integer) namesAndScores[i + 1];
+            highscores.add(new ElympicsHighscore((String) namesAndScores[i], score));
+        }
+        return highscores;
+    }
+
+    static List<String> names(String... names) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, names);
+        return list;
+    }
+
+    static List<String> namesOf(List<? extends ElympicsHighscore> highscores) {
+        List<String> names = new ArrayList<>();
+        for (ElympicsHighscore highscore : highscores) {
+            names.add(highscore.getName());
+        }
+        return names;
+    }
+
+}
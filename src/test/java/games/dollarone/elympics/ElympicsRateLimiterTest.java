@@ -0,0 +1,90 @@
+package games.dollarone.elympics;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ElympicsRateLimiterTest {
+
+    @Test
+    public void limitsRequestsInFlight() {
+        ElympicsRateLimiter limiter = new ElympicsRateLimiter(1000, 2);
+        ElympicsRateLimiter.Permit first = limiter.tryAcquire();
+        ElympicsRateLimiter.Permit second = limiter.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        first.close();
+        ElympicsRateLimiter.Permit third = limiter.tryAcquire();
+        assertNotNull(third);
+        second.close();
+        third.close();
+    }
+
+    @Test
+    public void closingAPermitTwiceReleasesItOnce() {
+        ElympicsRateLimiter limiter = new ElympicsRateLimiter(1000, 1);
+        ElympicsRateLimiter.Permit permit = limiter.tryAcquire();
+        permit.close();
+        permit.close();
+        ElympicsRateLimiter.Permit next = limiter.tryAcquire();
+        assertNotNull(next);
+        assertNull(limiter.tryAcquire());
+        next.close();
+    }
+
+    @Test
+    public void limitsBurstsToOneSecondOfRequests() {
+        ElympicsRateLimiter limiter = new ElympicsRateLimiter(2, 10);
+        ElympicsRateLimiter.Permit first = limiter.tryAcquire();
+        ElympicsRateLimiter.Permit second = limiter.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        first.close();
+        second.close();
+    }
+
+    @Test(timeout = 10000)
+    public void releasingHandsTheSlotToTheNextWaiter() throws Exception {
+        ElympicsRateLimiter limiter = new ElympicsRateLimiter(1000, 1);
+        ElympicsRateLimiter.Permit permit = limiter.acquire();
+        CompletableFuture<ElympicsRateLimiter.Permit> waiter = limiter.acquireAsync();
+        assertFalse(waiter.isDone());
+        permit.close();
+        waiter.get(5, TimeUnit.SECONDS).close();
+        assertPermitAvailable(limiter);
+    }
+
+    @Test(timeout = 10000)
+    public void cancelledWaiterGivesUpItsPlace() throws Exception {
+        ElympicsRateLimiter limiter = new ElympicsRateLimiter(1000, 1);
+        ElympicsRateLimiter.Permit permit = limiter.acquire();
+        CompletableFuture<ElympicsRateLimiter.Permit> cancelled = limiter.acquireAsync();
+        CompletableFuture<ElympicsRateLimiter.Permit> waiter = limiter.acquireAsync();
+        assertTrue(cancelled.cancel(false));
+        permit.close();
+        waiter.get(5, TimeUnit.SECONDS).close();
+        assertPermitAvailable(limiter);
+    }
+
+    @Test
+    public void sharesLimitersByKey() {
+        String key = "rate-limiter-test-" + System.nanoTime();
+        assertSame(ElympicsRateLimiter.forKey(key, 10, 1), ElympicsRateLimiter.forKey(key, 20, 2));
+    }
+
+    private static void assertPermitAvailable(ElympicsRateLimiter limiter) {
+        ElympicsRateLimiter.Permit permit = limiter.tryAcquire();
+        assertNotNull(permit);
+        permit.close();
+    }
+
+}
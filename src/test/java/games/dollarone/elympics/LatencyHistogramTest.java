@@ -0,0 +1,71 @@
+package games.dollarone.elympics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(99));
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(20, snapshot.getCount());
+        assertEquals(20, snapshot.getMax());
+        assertEquals(10.5, snapshot.getMean(), 0);
+        assertEquals(1, snapshot.getPercentile(0));
+        assertEquals(10, snapshot.getPercentile(50));
+        assertEquals(19, snapshot.getPercentile(95));
+        assertEquals(20, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void percentilesAreWithinTheRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 1000 * 1000;
+            long actual = snapshot.getPercentile(percentile);
+            assertTrue(percentile + ": " + actual, actual >= expected && actual <= expected * 1.035);
+        }
+        assertEquals(100000000, snapshot.getPercentile(100));
+        assertEquals(100, snapshot.getPercentile(100, TimeUnit.MILLISECONDS), 0);
+    }
+
+    @Test
+    public void recordsNegativeValuesAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getPercentile(50));
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value : new long[] {0, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " above its bucket", value <= LatencyHistogram.highestValueOf(index));
+            assertTrue(value + " below its bucket", index == 0 || value > LatencyHistogram.highestValueOf(index - 1));
+        }
+    }
+
+}
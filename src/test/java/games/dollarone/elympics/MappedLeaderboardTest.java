@@ -0,0 +1,80 @@
+package games.dollarone.elympics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static games.dollarone.elympics.ElympicsRankIndexTest.highscores;
+import static games.dollarone.elympics.ElympicsRankIndexTest.names;
+import static games.dollarone.elympics.ElympicsRankIndexTest.namesOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MappedLeaderboardTest {
+
+    private static final BigInteger HUGE = BigInteger.ONE.shiftLeft(100);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sortsFromBestToWorst() throws IOException {
+        List<ElympicsHighscore> highscores = highscores("c", 10, "a", 30, "b", 20, "d", 20);
+        highscores.add(new ElympicsHighscore("huge", HUGE));
+        highscores.add(new ElympicsHighscore("tiny", HUGE.negate()));
+        highscores.add(new ElympicsHighscore("max", Long.MAX_VALUE));
+        highscores.add(new ElympicsHighscore("none", (BigInteger) null));
+        try (MappedLeaderboard leaderboard = MappedLeaderboard.write(folder.newFile(), highscores.iterator())) {
+            assertEquals(names("huge", "max", "a", "b", "d", "c", "none", "tiny"), namesOf(leaderboard));
+            assertEquals(HUGE, leaderboard.getScore(0));
+            assertFalse(leaderboard.fitsInLong(0));
+            assertEquals(Long.MAX_VALUE, leaderboard.getLongScore(1));
+            assertEquals(BigInteger.ZERO, leaderboard.get(6).getScore());
+        }
+    }
+
+    @Test
+    public void rankOfCountsBetterScores() throws IOException {
+        List<ElympicsHighscore> highscores = highscores("a", 30, "b", 20, "c", 20, "d", 10);
+        highscores.add(new ElympicsHighscore("huge", HUGE));
+        try (MappedLeaderboard leaderboard = MappedLeaderboard.write(folder.newFile(), highscores.iterator())) {
+            assertEquals(1, leaderboard.rankOf(HUGE.add(BigInteger.ONE)));
+            assertEquals(1, leaderboard.rankOf(HUGE));
+            assertEquals(2, leaderboard.rankOf(Long.MAX_VALUE));
+            assertEquals(2, leaderboard.rankOf(31));
+            assertEquals(2, leaderboard.rankOf(30));
+            assertEquals(3, leaderboard.rankOf(25));
+            assertEquals(3, leaderboard.rankOf(20));
+            assertEquals(5, leaderboard.rankOf(15));
+            assertEquals(6, leaderboard.rankOf(BigInteger.valueOf(-1)));
+        }
+    }
+
+    @Test
+    public void reopensWhatWasWritten() throws IOException {
+        Random random = new Random(42);
+        List<ElympicsHighscore> highscores = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            highscores.add(new ElympicsHighscore("player" + i, (long) random.nextInt(100)));
+        }
+        List<ElympicsHighscore> sorted = new ArrayList<>(highscores);
+        Collections.sort(sorted);
+        File file = folder.newFile();
+        MappedLeaderboard.write(file, highscores.iterator()).close();
+        try (MappedLeaderboard leaderboard = MappedLeaderboard.open(file)) {
+            assertEquals(namesOf(sorted), namesOf(leaderboard));
+            for (int i = 0; i < sorted.size(); i++) {
+                assertEquals(sorted.get(i).getScore(), leaderboard.getScore(i));
+            }
+        }
+    }
+
+}
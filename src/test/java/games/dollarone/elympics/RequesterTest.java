@@ -0,0 +1,75 @@
+package games.dollarone.elympics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class RequesterTest {
+
+    private ElympicsEmulator emulator;
+
+    @Before
+    public void setUp() throws IOException {
+        emulator = new ElympicsEmulator().withGeneratedHighscores(10).start();
+    }
+
+    @After
+    public void tearDown() {
+        emulator.close();
+    }
+
+    private ElympicsBuilder builder() {
+        // limiters are shared by key, so each test gets its own
+        return new ElympicsBuilder()
+                .withEndpoint(emulator.getEndpoint())
+                .withKey("requester-test-" + UUID.randomUUID())
+                .withRateLimit(1000, 1);
+    }
+
+    @Test(timeout = 10000)
+    public void failedConnectGivesThePermitBack() throws IOException {
+        AtomicBoolean refuse = new AtomicBoolean(true);
+        Elympics elympics = builder()
+                .withConnector(url -> {
+                    if (refuse.getAndSet(false)) throw new IOException("Connection refused");
+                    return (HttpURLConnection) url.openConnection();
+                })
+                .build();
+        try {
+            elympics.getHighscores();
+            fail("Expected the connector to fail");
+        } catch (IOException expected) {
+            assertEquals("Connection refused", expected.getMessage());
+        }
+        // blocks forever if the failed attempt kept the only permit
+        assertEquals(10, elympics.getHighscores().size());
+        assertPermitAvailable(elympics);
+    }
+
+    @Test(timeout = 10000)
+    public void streamedResponseHoldsThePermitUntilClosed() throws IOException {
+        Elympics elympics = builder().build();
+        try (CloseableIterator<ElympicsHighscore> highscores = elympics.iterateHighscores()) {
+            assertNotNull(highscores.next());
+            assertNull(elympics.getRateLimiter().tryAcquire());
+        }
+        assertPermitAvailable(elympics);
+    }
+
+    private static void assertPermitAvailable(Elympics elympics) {
+        ElympicsRateLimiter.Permit permit = elympics.getRateLimiter().tryAcquire();
+        assertNotNull(permit);
+        permit.close();
+    }
+
+}
@@ -0,0 +1,57 @@
+package games.dollarone.elympics;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void parsesRetryAfterInSeconds() {
+        assertEquals(120000, RetryPolicy.parseRetryAfterMillis("120"));
+        assertEquals(5000, RetryPolicy.parseRetryAfterMillis(" 5 "));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("-3"));
+    }
+
+    @Test
+    public void parsesRetryAfterAsAnHttpDate() {
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60));
+        long delay = RetryPolicy.parseRetryAfterMillis(date);
+        // the date only has whole seconds
+        assertTrue("delay " + delay, delay > 58000 && delay <= 60000);
+    }
+
+    @Test
+    public void retryAfterInThePastMeansNoDelay() {
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    @Test
+    public void ignoresMissingOrInvalidRetryAfter() {
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis(null));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("soon"));
+    }
+
+    @Test
+    public void delayIsAtLeastTheRetryAfter() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000, 60000, TimeUnit.MILLISECONDS);
+        assertEquals(30000, policy.delayMillis(1, "30"));
+    }
+
+    @Test
+    public void backoffDoublesUpToTheMaximum() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 60000, TimeUnit.MILLISECONDS);
+        for (int retry = 1; retry <= 8; retry++) {
+            long backoff = Math.min(1000, 100L << (retry - 1));
+            long delay = policy.delayMillis(retry, null);
+            assertTrue("retry " + retry + " delay " + delay, delay >= backoff / 2 && delay <= backoff);
+        }
+    }
+
+}
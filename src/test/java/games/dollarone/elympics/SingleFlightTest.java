@@ -0,0 +1,105 @@
+package games.dollarone.elympics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test(timeout = 10000)
+    public void coalescesConcurrentCalls() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        Object result = new Object();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger joined = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> flight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return result;
+                }, joined::incrementAndGet)));
+            }
+            // the call is held until every other caller has joined it
+            while (joined.get() < CALLERS - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<Object> future : results) {
+                assertSame(result, future.get());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void sharesTheFailureWithCallersThatJoined() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        IOException failure = new IOException("Failed");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> first = executor.submit(() -> flight.execute("key", () -> {
+                started.countDown();
+                await(release);
+                throw failure;
+            }, () -> fail("Joined")));
+            started.await();
+            try {
+                flight.execute("key", () -> {
+                    throw new AssertionError("Called");
+                }, release::countDown);
+                fail("Expected the call to fail");
+            } catch (IOException e) {
+                assertSame(failure, e);
+            }
+            try {
+                first.get();
+                fail("Expected the call to fail");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void callsAgainOnceTheCallCompleted() throws IOException {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        Runnable joined = () -> fail("Joined");
+        assertEquals(1, (int) flight.execute("key", calls::incrementAndGet, joined));
+        assertEquals(2, (int) flight.execute("key", calls::incrementAndGet, joined));
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) throw new IOException("Timed out");
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package games.dollarone.elympics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SubmissionJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SubmissionJournal open(File file) throws IOException {
+        return new SubmissionJournal(file, SubmissionJournal.FsyncPolicy.NEVER, Runnable::run);
+    }
+
+    @Test
+    public void replaysUnacknowledgedSubmissionsAfterReopening() throws IOException {
+        File file = folder.newFile();
+        try (SubmissionJournal journal = open(file)) {
+            journal.acknowledge(journal.append("first", BigInteger.ONE));
+            journal.append("second", BigInteger.valueOf(2));
+            journal.append(null, null);
+        }
+        try (SubmissionJournal journal = open(file)) {
+            assertEquals(2, journal.getPendingCount());
+            List<SubmissionJournal.Entry> entries = journal.claim(10);
+            assertEquals(2, entries.size());
+            assertEquals("second", entries.get(0).name);
+            assertEquals(BigInteger.valueOf(2), entries.get(0).score);
+            assertNull(entries.get(1).name);
+            assertNull(entries.get(1).score);
+        }
+    }
+
+    @Test
+    public void doesNotClaimSubmissionsInFlight() throws IOException {
+        try (SubmissionJournal journal = open(folder.newFile())) {
+            long id = journal.append("sending", BigInteger.TEN);
+            assertTrue(journal.claim(10).isEmpty());
+            journal.release(id);
+            List<SubmissionJournal.Entry> entries = journal.claim(10);
+            assertEquals(1, entries.size());
+            assertEquals(id, entries.get(0).id);
+            assertTrue(journal.claim(10).isEmpty());
+        }
+    }
+
+    @Test
+    public void ignoresATornRecord() throws IOException {
+        File file = folder.newFile();
+        try (SubmissionJournal journal = open(file)) {
+            journal.append("a", BigInteger.ONE);
+            journal.append("b", BigInteger.ONE);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // the second record starts after the 8 byte header and the 27 bytes of the first, and its checksum
+            // comes after its length and status
+            raf.seek(8 + 27 + 5);
+            raf.writeInt(raf.readInt() ^ 1);
+        }
+        try (SubmissionJournal journal = open(file)) {
+            assertEquals(1, journal.getPendingCount());
+            // the torn record is overwritten by the next one
+            journal.append("c", BigInteger.ONE);
+        }
+        try (SubmissionJournal journal = open(file)) {
+            List<SubmissionJournal.Entry> entries = journal.claim(10);
+            assertEquals(2, entries.size());
+            assertEquals("a", entries.get(0).name);
+            assertEquals("c", entries.get(1).name);
+        }
+    }
+
+    @Test
+    public void compactionKeepsOnlyUnacknowledgedSubmissions() throws IOException {
+        File file = folder.newFile();
+        try (SubmissionJournal journal = open(file)) {
+            for (int i = 0; i < 100; i++) {
+                long id = journal.append("player" + i, BigInteger.valueOf(i));
+                if (i % 10 == 0) {
+                    journal.release(id);
+                } else {
+                    journal.acknowledge(id);
+                }
+            }
+            journal.compact();
+            assertEquals(10, journal.getPendingCount());
+            journal.append("after", BigInteger.ONE);
+        }
+        assertFalse(new File(file.getPath() + ".compact").exists());
+        try (SubmissionJournal journal = open(file)) {
+            List<SubmissionJournal.Entry> entries = journal.claim(100);
+            assertEquals(11, entries.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("player" + i * 10, entries.get(i).name);
+                assertEquals(BigInteger.valueOf(i * 10), entries.get(i).score);
+            }
+            assertEquals("after", entries.get(10).name);
+        }
+    }
+
+}